@@ -0,0 +1,122 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * See {@link CompressionPolicy#adaptive(int)}.
+ */
+class AdaptiveCompressionPolicy implements CompressionPolicy {
+    static final long MIN_SIZE = 1024; // not worth second-guessing, small records compress quickly
+    static final int MIN_PROBE = 512;
+    static final double INCOMPRESSIBLE_RATIO = 0.9;
+    private static final Set<String> INCOMPRESSIBLE_TYPES = new HashSet<>(Arrays.asList(
+            "application/epub+zip", "application/font-woff", "application/gzip", "application/java-archive",
+            "application/vnd.rar", "application/x-7z-compressed", "application/x-bzip2", "application/x-font-woff",
+            "application/x-gzip", "application/x-rar-compressed", "application/x-xz", "application/zip",
+            "application/zstd", "font/woff", "font/woff2", "image/avif", "image/gif", "image/heic", "image/heif",
+            "image/jp2", "image/jpeg", "image/jxl", "image/png", "image/webp"));
+    private static final Set<String> INCOMPRESSIBLE_ENCODINGS = new HashSet<>(Arrays.asList(
+            "br", "compress", "deflate", "gzip", "x-gzip", "zstd"));
+
+    private final int defaultLevel;
+    private final ThreadLocal<Deflater> probeDeflater = ThreadLocal.withInitial(
+            () -> new Deflater(Deflater.BEST_SPEED, true));
+
+    AdaptiveCompressionPolicy(int defaultLevel) {
+        if (defaultLevel < Deflater.NO_COMPRESSION || defaultLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + defaultLevel);
+        }
+        this.defaultLevel = defaultLevel;
+    }
+
+    @Override
+    public int level(WarcRecord record, ByteBuffer sample) throws IOException {
+        if (record.body().size() < MIN_SIZE) return defaultLevel;
+        MediaType type = record.contentType();
+        ByteBuffer payload = sample;
+        if (type.base().equals(MediaType.HTTP)) {
+            int headerLength = httpHeaderLength(sample);
+            if (headerLength >= 0) {
+                if (!(record instanceof WarcRequest)) {
+                    byte[] header = new byte[headerLength];
+                    sample.duplicate().get(header);
+                    try {
+                        HttpResponse http = HttpResponse.parseWithoutBody(Channels.newChannel(
+                                new ByteArrayInputStream(header)), null);
+                        for (String encoding : http.headers().all("Content-Encoding")) {
+                            if (INCOMPRESSIBLE_ENCODINGS.contains(encoding.trim().toLowerCase(Locale.ROOT))) {
+                                return Deflater.BEST_SPEED;
+                            }
+                        }
+                        type = http.contentType();
+                    } catch (IOException | RuntimeException e) {
+                        // not a response we can parse, fall back to probing
+                    }
+                }
+                payload = sample.duplicate();
+                payload.position(payload.position() + headerLength);
+            }
+        }
+        if (isIncompressible(type)) return Deflater.BEST_SPEED;
+        return probe(payload);
+    }
+
+    static boolean isIncompressible(MediaType type) {
+        String base = type.type().toLowerCase(Locale.ROOT);
+        String subtype = type.subtype().toLowerCase(Locale.ROOT);
+        if (base.equals("video")) return true;
+        if (base.equals("audio")) return !subtype.equals("wav") && !subtype.equals("x-wav") &&
+                !subtype.equals("midi");
+        return INCOMPRESSIBLE_TYPES.contains(base + "/" + subtype);
+    }
+
+    /**
+     * Returns the length of the HTTP header at the start of the sample or -1 if it doesn't end within the sample.
+     */
+    private static int httpHeaderLength(ByteBuffer sample) {
+        int start = sample.position();
+        for (int i = start; i + 3 < sample.limit(); i++) {
+            if (sample.get(i) == '\r' && sample.get(i + 1) == '\n' && sample.get(i + 2) == '\r' &&
+                    sample.get(i + 3) == '\n') {
+                return i + 4 - start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Trial compresses the payload sample at the fastest level to see whether it shrinks.
+     */
+    private int probe(ByteBuffer payload) {
+        int length = payload.remaining();
+        if (length < MIN_PROBE) return defaultLevel;
+        byte[] input = new byte[length];
+        payload.duplicate().get(input);
+        Deflater deflater = probeDeflater.get();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] output = new byte[length + 64];
+        long compressedLength = 0;
+        while (!deflater.finished()) {
+            compressedLength += deflater.deflate(output);
+        }
+        double ratio = (double) compressedLength / length;
+        if (ratio >= 1.0) return Deflater.NO_COMPRESSION;
+        if (ratio > INCOMPRESSIBLE_RATIO) return Deflater.BEST_SPEED;
+        return defaultLevel;
+    }
+}
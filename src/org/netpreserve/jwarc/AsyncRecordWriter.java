@@ -0,0 +1,189 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * The pipeline behind {@link WarcWriter#writeAsync(WarcRecord)}. Worker threads serialize and deflate each record
+ * into a complete gzip member in memory. A single sequencer thread then appends the members in submission order,
+ * which is possible because record-at-a-time gzip members are independent of each other.
+ */
+class AsyncRecordWriter {
+    static final long MAX_BUFFERED_BODY = 16 * 1024 * 1024;
+
+    private final WarcWriter writer;
+    private final boolean gzip;
+    private final ExecutorService workers;
+    private final ExecutorService sequencer;
+    private final Semaphore inFlight;
+    private final ThreadLocal<Compressor> compressors = ThreadLocal.withInitial(this::newCompressor);
+    private final List<Compressor> createdCompressors = new ArrayList<>();
+    private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+    private boolean closed;
+
+    AsyncRecordWriter(WarcWriter writer, boolean gzip, int threads) {
+        this.writer = writer;
+        this.gzip = gzip;
+        this.inFlight = new Semaphore(threads * 4);
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jwarc-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sequencer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwarc-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    CompletableFuture<WriteResult> submit(WarcRecord record) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        CompletableFuture<WriteResult> result;
+        synchronized (this) {
+            if (closed) {
+                inFlight.release();
+                throw new ClosedChannelException();
+            }
+            CompletableFuture<CompressedRecord> compressed;
+            long size = record.body().size();
+            if (gzip && size >= 0 && size <= MAX_BUFFERED_BODY) {
+                compressed = CompletableFuture.supplyAsync(() -> compress(record), workers);
+            } else {
+                compressed = CompletableFuture.completedFuture(null); // written by the sequencer directly
+            }
+            // a failed record must not stop the ones after it being appended
+            result = tail.handle((ignored, e) -> null).thenCombineAsync(compressed, (ignored, c) -> {
+                try {
+                    return c == null ? writer.append(record, null, -1, 0) :
+                            writer.append(record, c.member, c.level, c.uncompressedLength);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, sequencer);
+            tail = result;
+        }
+        result.whenComplete((r, e) -> inFlight.release());
+        return result;
+    }
+
+    private Compressor newCompressor() {
+        Compressor compressor = new Compressor();
+        synchronized (createdCompressors) {
+            createdCompressors.add(compressor);
+        }
+        return compressor;
+    }
+
+    private CompressedRecord compress(WarcRecord record) {
+        Compressor compressor = compressors.get();
+        try {
+            return compressor.compress(record);
+        } catch (RuntimeException e) {
+            // discard the partially written member
+            compressors.remove();
+            synchronized (createdCompressors) {
+                createdCompressors.remove(compressor);
+            }
+            compressor.end();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for all submitted records to be written and stops the threads.
+     */
+    void close() throws IOException {
+        CompletableFuture<?> last;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            last = tail;
+        }
+        try {
+            last.handle((ignored, e) -> null).get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            workers.shutdown();
+            sequencer.shutdown();
+            // every compression has finished by now as each write waits for its record's compression
+            synchronized (createdCompressors) {
+                for (Compressor compressor : createdCompressors) {
+                    compressor.end();
+                }
+                createdCompressors.clear();
+            }
+        }
+    }
+
+    private static class CompressedRecord {
+        final byte[] member;
+        final int level;
+        final long uncompressedLength;
+
+        CompressedRecord(byte[] member, int level, long uncompressedLength) {
+            this.member = member;
+            this.level = level;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+
+    private class Compressor {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final GzipChannel gzipChannel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WarcWriter.WRITE_BUFFER_SIZE);
+        private final HeaderEncoder headerEncoder = new HeaderEncoder();
+
+        Compressor() {
+            try {
+                gzipChannel = new GzipChannel(Channels.newChannel(output));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        CompressedRecord compress(WarcRecord record) {
+            output.reset();
+            try {
+                int level = writer.compressionLevel(record);
+                gzipChannel.setLevel(level);
+                long uncompressedLength = WarcWriter.writeRecord(gzipChannel, record, headerEncoder, buffer);
+                gzipChannel.finish();
+                return new CompressedRecord(output.toByteArray(), level, uncompressedLength);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Releases the deflater's native memory.
+         */
+        void end() {
+            try {
+                gzipChannel.close();
+            } catch (IOException | RuntimeException e) {
+                // only the in-memory output is affected
+            }
+        }
+    }
+}
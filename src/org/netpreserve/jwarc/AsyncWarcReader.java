@@ -0,0 +1,505 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads WARC records from an {@link AsynchronousFileChannel} without blocking the calling thread.
+ * <p>
+ * Reads are issued asynchronously and the data fed incrementally to the record parser, so many records can be fetched
+ * concurrently without a blocked thread for each. Records may be read at arbitrary positions with
+ * {@link #read(long)} or in sequence with {@link #next()} and {@link #forEach(Function)}.
+ * <p>
+ * Unlike {@link WarcReader} each record body is read fully into memory before the record is returned so this reader
+ * is best suited to records of moderate size. Uncompressed and record-at-a-time gzipped files are supported. Zstandard
+ * compressed files are not.
+ */
+public class AsyncWarcReader implements Closeable {
+    private static final int DEFAULT_READ_SIZE = 65536;
+    private static final int CRLFCRLF = 0x0d0a0d0a;
+    private static final CompletionHandler<Integer, CompletableFuture<Integer>> READ_HANDLER =
+            new CompletionHandler<Integer, CompletableFuture<Integer>>() {
+                @Override
+                public void completed(Integer result, CompletableFuture<Integer> future) {
+                    future.complete(result);
+                }
+
+                @Override
+                public void failed(Throwable exc, CompletableFuture<Integer> future) {
+                    future.completeExceptionally(exc);
+                }
+            };
+
+    private final AsynchronousFileChannel channel;
+    private final HashMap<String, WarcRecord.Constructor> types = new HashMap<>(WarcReader.defaultTypes);
+    private String filename;
+    private boolean lenient;
+    private long position;
+    private long nextPosition;
+
+    public AsyncWarcReader(AsynchronousFileChannel channel) {
+        this.channel = channel;
+    }
+
+    public AsyncWarcReader(Path path) throws IOException {
+        this(AsynchronousFileChannel.open(path, StandardOpenOption.READ));
+        this.filename = path.getFileName().toString();
+    }
+
+    /**
+     * Reads the record at the given position.
+     * <p>
+     * May be called concurrently from multiple threads.
+     *
+     * @param position byte offset of the beginning of the record
+     * @return a future which completes with the record, or exceptionally with an {@link EOFException} if there is no
+     * record at the position
+     */
+    public CompletableFuture<WarcRecord> read(long position) {
+        return new RecordRead(position, false).start().thenApply(read -> read.record);
+    }
+
+    /**
+     * Reads the next record in sequence, starting from the beginning of the channel.
+     * <p>
+     * The caller must wait for the returned future to complete before calling this method again.
+     *
+     * @return a future which completes with the record or an empty <code>Optional</code> at the end of the channel
+     */
+    public CompletableFuture<Optional<WarcRecord>> next() {
+        long start = nextPosition;
+        return new RecordRead(start, true).start().thenApply(read -> {
+            if (read == null) return Optional.empty();
+            position = start;
+            nextPosition = start + read.length;
+            return Optional.of(read.record);
+        });
+    }
+
+    /**
+     * Reads each record in sequence and passes it to an action. The next record is not read until the stage returned
+     * by the action completes, so a slow consumer limits the rate at which records are read.
+     *
+     * @return a future which completes once all the records have been processed or exceptionally on the first error
+     */
+    public CompletableFuture<Void> forEach(Function<? super WarcRecord, ? extends CompletionStage<?>> action) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        forEachStep(action, done);
+        return done;
+    }
+
+    private void forEachStep(Function<? super WarcRecord, ? extends CompletionStage<?>> action,
+                             CompletableFuture<Void> done) {
+        next().thenCompose(record -> record.isPresent() ? action.apply(record.get()).thenApply(result -> true) :
+                CompletableFuture.completedFuture(false)).whenComplete((more, error) -> {
+            if (error != null) {
+                done.completeExceptionally(error);
+            } else if (more) {
+                forEachStep(action, done);
+            } else {
+                done.complete(null);
+            }
+        });
+    }
+
+    /**
+     * Returns the byte position of the record most recently read by {@link #next()}.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Sets the position the next call to {@link #next()} will read from.
+     */
+    public void position(long newPosition) {
+        if (newPosition < 0) throw new IllegalArgumentException("negative position");
+        nextPosition = newPosition;
+    }
+
+    /**
+     * Registers a new extension record type.
+     *
+     * @see WarcReader#registerType(String, WarcRecord.Constructor)
+     */
+    public void registerType(String type, WarcRecord.Constructor<WarcRecord> constructor) {
+        types.put(type, constructor);
+    }
+
+    /**
+     * Sets the lenient mode for the WarcParser.
+     *
+     * @see WarcReader#setLenient(boolean)
+     */
+    public void setLenient(boolean lenient) {
+        this.lenient = lenient;
+    }
+
+    /**
+     * Closes the underlying channel.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private CompletableFuture<Integer> readAt(ByteBuffer dst, long position) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        try {
+            channel.read(dst, position, future, READ_HANDLER);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static class ReadResult {
+        final WarcRecord record;
+        final long length;
+
+        ReadResult(WarcRecord record, long length) {
+            this.record = record;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The state of a single record read. Each async read feeds the input through the gzip inflater (if any) and into
+     * the decoder until the record is complete.
+     */
+    private class RecordRead {
+        private final long start;
+        private final boolean endAllowed;
+        private final RecordDecoder decoder = new RecordDecoder(lenient);
+        private final CompletableFuture<ReadResult> result = new CompletableFuture<>();
+        private ByteBuffer input = ByteBuffer.allocate(DEFAULT_READ_SIZE);
+        private long inputPosition;
+        private GzipInflater gzip;
+        private boolean detected;
+
+        RecordRead(long start, boolean endAllowed) {
+            this.start = start;
+            this.endAllowed = endAllowed;
+            this.inputPosition = start;
+        }
+
+        CompletableFuture<ReadResult> start() {
+            result.whenComplete((read, error) -> {
+                if (gzip != null) gzip.end();
+            });
+            readMore();
+            return result;
+        }
+
+        private void readMore() {
+            ByteBuffer dst;
+            if (gzip == null && decoder.inBody() && input.position() == 0) {
+                // uncompressed bodies can be read straight into place
+                dst = decoder.body;
+            } else {
+                if (!input.hasRemaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(input.capacity() * 2);
+                    input.flip();
+                    bigger.put(input);
+                    input = bigger;
+                }
+                dst = input;
+            }
+            readAt(dst, inputPosition).whenComplete((n, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                    return;
+                }
+                try {
+                    if (process(dst, n)) {
+                        readMore();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (e instanceof ParsingException) {
+                        ((ParsingException) e).recordSource = new RecordSource(filename, start);
+                    }
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        /**
+         * Processes the result of a read. Returns true if more input is needed.
+         */
+        private boolean process(ByteBuffer dst, int n) throws IOException {
+            if (n < 0) {
+                if (!decoder.finish() || (gzip != null && gzip.inMember())) {
+                    if (!decoder.started() && (gzip == null || !gzip.started())) {
+                        if (!endAllowed) throw new EOFException("no record at position " + start);
+                        result.complete(null);
+                        return false;
+                    }
+                    throw new EOFException("unexpected end of file reading record at position " + start);
+                }
+                complete();
+                return false;
+            }
+            inputPosition += n;
+            if (dst == decoder.body) {
+                decoder.feed(ByteBuffer.allocate(0));
+                return true;
+            }
+
+            input.flip();
+            try {
+                if (!detected && input.remaining() >= 4) {
+                    detected = true;
+                    int magic = input.getInt(input.position());
+                    if ((magic >>> 16) == 0x1f8b) {
+                        gzip = new GzipInflater();
+                    } else if (magic == 0x28b52ffd || magic == 0x5d2a4d18) {
+                        throw new IOException("zstd compressed WARCs are not supported by AsyncWarcReader");
+                    }
+                }
+                if (!detected) return true;
+                if (gzip == null) {
+                    decoder.feed(input);
+                } else {
+                    gzip.feed(input, decoder);
+                }
+            } finally {
+                input.compact();
+            }
+
+            if (decoder.done() && (gzip == null || !gzip.inMember())) {
+                complete();
+                return false;
+            }
+            return true;
+        }
+
+        private void complete() {
+            long length = gzip == null ? decoder.length() : gzip.inputLength();
+            WarcRecord.Constructor constructor = types.get(decoder.headers.sole("WARC-Type").orElse("default"));
+            if (constructor == null) {
+                constructor = types.get("default");
+            }
+            decoder.body.flip();
+            WarcRecord record = constructor.construct(decoder.parser.version(), decoder.headers,
+                    LengthedBody.create(decoder.body));
+            record.recordSource = new RecordSource(filename, start);
+            result.complete(new ReadResult(record, length));
+        }
+    }
+
+    /**
+     * Decodes a single record from a stream of uncompressed bytes fed to it in pieces.
+     */
+    private static class RecordDecoder {
+        private static final int HEADER = 0, BODY = 1, TRAILER = 2, DONE = 3;
+        final WarcParser parser = new WarcParser();
+        MessageHeaders headers;
+        ByteBuffer body;
+        private int state = HEADER;
+        private int trailer;
+        private int trailerLength;
+
+        RecordDecoder(boolean lenient) {
+            parser.setLenient(lenient);
+        }
+
+        void feed(ByteBuffer src) throws IOException {
+            while (state != DONE && (src.hasRemaining() || state == BODY && !body.hasRemaining())) {
+                switch (state) {
+                    case HEADER:
+                        int start = src.position();
+                        parser.parse(src);
+                        if (parser.isError()) {
+                            throw new ParsingException("invalid WARC record at position " + parser.position() + ": "
+                                    + MessageParser.getErrorContext(src, start, 40));
+                        }
+                        if (parser.isFinished()) {
+                            headers = parser.headers();
+                            long contentLength = headers.sole("Content-Length").map(Long::parseLong).orElse(0L);
+                            if (contentLength > Integer.MAX_VALUE - 8) {
+                                throw new IOException("record body of " + contentLength + " bytes is too large");
+                            }
+                            body = ByteBuffer.allocate((int) contentLength);
+                            state = BODY;
+                        }
+                        break;
+                    case BODY:
+                        IOUtils.transfer(src, body);
+                        if (!body.hasRemaining()) {
+                            state = TRAILER;
+                        }
+                        break;
+                    case TRAILER:
+                        byte b = src.get(src.position());
+                        if (b != '\r' && b != '\n') {
+                            state = DONE;
+                            break;
+                        }
+                        src.get();
+                        trailer = trailer << 8 | b;
+                        trailerLength++;
+                        boolean arc = parser.version().getProtocol().equals("ARC");
+                        if (arc ? trailerLength == 1 : trailerLength == 4 && trailer == CRLFCRLF) {
+                            state = DONE;
+                        }
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Signals the end of input. Returns true if the record is complete.
+         */
+        boolean finish() {
+            if (state == TRAILER) state = DONE;
+            return state == DONE;
+        }
+
+        boolean started() {
+            return parser.position() > 0;
+        }
+
+        boolean inBody() {
+            return state == BODY;
+        }
+
+        boolean done() {
+            return state == DONE;
+        }
+
+        long length() {
+            return parser.position() + body.capacity() + trailerLength;
+        }
+    }
+
+    /**
+     * Incrementally inflates gzip members fed to it in pieces.
+     */
+    private static class GzipInflater {
+        private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] output = new byte[65536];
+        private boolean inMember;
+        private boolean inTrailer;
+        private long inputLength;
+
+        /**
+         * Inflates as much of the input as possible into the decoder.
+         */
+        void feed(ByteBuffer input, RecordDecoder decoder) throws IOException {
+            try {
+                while (input.hasRemaining()) {
+                    if (inTrailer) {
+                        if (input.remaining() < 8) return;
+                        input.position(input.position() + 8);
+                        inputLength += 8;
+                        inTrailer = false;
+                        inMember = false;
+                        if (decoder.finish()) return;
+                    } else if (!inMember) {
+                        int headerLength = headerLength(input);
+                        if (headerLength < 0) return;
+                        input.position(input.position() + headerLength);
+                        inputLength += headerLength;
+                        inflater.reset();
+                        inMember = true;
+                    } else {
+                        if (inflater.needsInput()) {
+                            inflater.setInput(input.array(), input.arrayOffset() + input.position(),
+                                    input.remaining());
+                        }
+                        int n = inflater.inflate(output);
+                        int newPosition = input.limit() - inflater.getRemaining();
+                        inputLength += newPosition - input.position();
+                        input.position(newPosition);
+                        if (n > 0) {
+                            if (decoder.done()) {
+                                throw new IOException("gzip member contains more than one record");
+                            }
+                            ByteBuffer inflated = ByteBuffer.wrap(output, 0, n);
+                            decoder.feed(inflated);
+                            if (inflated.hasRemaining()) {
+                                throw new IOException("gzip member contains more than one record");
+                            }
+                        }
+                        if (inflater.finished()) {
+                            inTrailer = true;
+                        } else if (n == 0 && inflater.needsInput()) {
+                            return;
+                        }
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        /**
+         * Returns the length of the gzip member header at the start of the buffer or -1 if it is incomplete.
+         */
+        private static int headerLength(ByteBuffer buffer) throws IOException {
+            int start = buffer.position();
+            int end = buffer.limit();
+            if (end - start < 10) return -1;
+            if ((buffer.get(start) & 0xff) != 0x1f || (buffer.get(start + 1) & 0xff) != 0x8b) {
+                throw new ZipException("not in gzip format");
+            }
+            if (buffer.get(start + 2) != GzipChannel.CM_DEFLATE) {
+                throw new ZipException("unsupported compression method: " + buffer.get(start + 2));
+            }
+            int flags = buffer.get(start + 3);
+            int p = start + 10;
+            if ((flags & FEXTRA) != 0) {
+                if (end - p < 2) return -1;
+                p += 2 + ((buffer.get(p) & 0xff) | (buffer.get(p + 1) & 0xff) << 8);
+            }
+            for (int flag : new int[]{FNAME, FCOMMENT}) {
+                if ((flags & flag) != 0) {
+                    while (true) {
+                        if (p >= end) return -1;
+                        if (buffer.get(p++) == 0) break;
+                    }
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                p += 2;
+            }
+            return p > end ? -1 : p - start;
+        }
+
+        boolean started() {
+            return inputLength > 0;
+        }
+
+        void end() {
+            inflater.end();
+        }
+
+        boolean inMember() {
+            return inMember;
+        }
+
+        long inputLength() {
+            return inputLength;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+interface CompressingChannel extends WritableByteChannel {
+
+    /**
+     * Ends the current independently decompressible member or frame. The next write starts a new one.
+     *
+     * @return the number of compressed bytes written by finishing
+     */
+    int finish() throws IOException;
+
+    /**
+     * Number of bytes written to the underlying channel.
+     */
+    long outputPosition();
+}
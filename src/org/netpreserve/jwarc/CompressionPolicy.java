@@ -0,0 +1,57 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/**
+ * Chooses the deflate level for each record a {@link WarcWriter} compresses with gzip.
+ *
+ * @see WarcWriter#setCompressionPolicy(CompressionPolicy)
+ */
+@FunctionalInterface
+public interface CompressionPolicy {
+
+    /**
+     * Returns the deflate level to compress a record with, from 0 (no compression) to 9 (best compression). May be
+     * called concurrently from several threads when records are written with {@link WarcWriter#writeAsync(WarcRecord)}.
+     *
+     * @param record the record about to be written. Implementations must not read from its body.
+     * @param sample the first few KB of the record block (read-only), or an empty buffer if it could not be sampled
+     */
+    int level(WarcRecord record, ByteBuffer sample) throws IOException;
+
+    /**
+     * Always uses the same deflate level.
+     */
+    static CompressionPolicy fixed(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return (record, sample) -> level;
+    }
+
+    /**
+     * Uses {@link Deflater#BEST_COMPRESSION} except for payloads that are unlikely to shrink.
+     *
+     * @see #adaptive(int)
+     */
+    static CompressionPolicy adaptive() {
+        return adaptive(Deflater.BEST_COMPRESSION);
+    }
+
+    /**
+     * Uses the fastest level for payloads that are unlikely to shrink and the given level for everything else.
+     * A payload is considered incompressible if its media type is an already compressed format (e.g. JPEG, MP4, WOFF2
+     * or zip), its HTTP Content-Encoding is gzip, br or zstd, or a trial compression of the sample barely reduces its
+     * size. Samples that don't compress at all are stored without compression.
+     */
+    static CompressionPolicy adaptive(int defaultLevel) {
+        return new AdaptiveCompressionPolicy(defaultLevel);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * Keeps idle HTTP/1.1 connections open per host so that {@link WarcWriter#fetch} can reuse them
+ * instead of paying for a new TCP and TLS handshake on every request. New TLS connections are created with the
+ * default SSLSocketFactory whose session cache lets a second connection to the same host resume the session.
+ * <p>
+ * Connections left idle for longer than {@link #IDLE_TIMEOUT_MILLIS} are closed and hosts without idle connections
+ * are forgotten, so fetching from many hosts doesn't accumulate state.
+ */
+class ConnectionPool implements Closeable {
+    static final int MAX_IDLE_PER_HOST = 8;
+    static final long IDLE_TIMEOUT_MILLIS = 30_000;
+
+    private final Map<String, Deque<Idle>> idle = new HashMap<>();
+    private long lastSweep = System.currentTimeMillis();
+    private boolean closed;
+
+    /**
+     * Returns an idle connection to the given host or null if there isn't one.
+     */
+    synchronized Socket reuse(String scheme, String host, int port) {
+        String key = key(scheme, host, port);
+        Deque<Idle> queue = idle.get(key);
+        if (queue == null) return null;
+        long now = System.currentTimeMillis();
+        Socket socket = null;
+        while (socket == null && !queue.isEmpty()) {
+            Idle entry = queue.pollLast();
+            if (now - entry.since < IDLE_TIMEOUT_MILLIS && !entry.socket.isClosed()
+                    && !entry.socket.isInputShutdown()) {
+                socket = entry.socket;
+            } else {
+                closeQuietly(entry.socket);
+            }
+        }
+        if (queue.isEmpty()) idle.remove(key);
+        return socket;
+    }
+
+    /**
+     * Opens a new connection.
+     */
+    Socket connect(String scheme, String host, int port) throws IOException {
+        Objects.requireNonNull(host);
+        boolean https;
+        if ("http".equalsIgnoreCase(scheme)) {
+            https = false;
+        } else if ("https".equalsIgnoreCase(scheme)) {
+            https = true;
+        } else {
+            throw new IllegalArgumentException("Unsupported URI scheme: " + scheme);
+        }
+        if (port < 0) port = https ? 443 : 80;
+        Socket socket = new Socket();
+        try {
+            // InetAddress caches lookups itself, honouring networkaddress.cache.ttl
+            socket.connect(new InetSocketAddress(host, port));
+            if (https) {
+                // layering keeps the hostname for SNI and so the session cache is keyed on it
+                return ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, host, port, true);
+            }
+            return socket;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool after a complete response has been read from it.
+     */
+    synchronized void release(String scheme, String host, int port, Socket socket) {
+        if (closed) {
+            closeQuietly(socket);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastSweep >= IDLE_TIMEOUT_MILLIS) {
+            sweep(now);
+        }
+        Deque<Idle> queue = idle.computeIfAbsent(key(scheme, host, port), k -> new ArrayDeque<>());
+        if (queue.size() >= MAX_IDLE_PER_HOST) {
+            closeQuietly(queue.pollFirst().socket);
+        }
+        queue.addLast(new Idle(socket, now));
+    }
+
+    /**
+     * Closes connections that have been idle too long, including those to hosts we haven't fetched from since.
+     */
+    private void sweep(long now) {
+        lastSweep = now;
+        for (Iterator<Deque<Idle>> it = idle.values().iterator(); it.hasNext(); ) {
+            Deque<Idle> queue = it.next();
+            // the oldest connections are at the front
+            while (!queue.isEmpty() && now - queue.peekFirst().since >= IDLE_TIMEOUT_MILLIS) {
+                closeQuietly(queue.pollFirst().socket);
+            }
+            if (queue.isEmpty()) it.remove();
+        }
+    }
+
+    private static String key(String scheme, String host, int port) {
+        return scheme.toLowerCase(Locale.ROOT) + "://" + host.toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Closes all idle connections.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Deque<Idle> queue : idle.values()) {
+            for (Idle entry : queue) {
+                closeQuietly(entry.socket);
+            }
+        }
+        idle.clear();
+    }
+
+    private static class Idle {
+        final Socket socket;
+        final long since;
+
+        Idle(Socket socket, long since) {
+            this.socket = socket;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A digest held as its raw bytes and canonical algorithm name. Unlike {@link WarcDigest}, which keeps the header
+ * string and lazily builds further strings from it, a SHA-1 key is little more than its 20 bytes, and keys compare
+ * by their bytes without any base32 encoding. Suitable for large sets of digests such as deduplication indexes.
+ *
+ * @see DigestTable
+ */
+public final class DigestKey {
+    final String algorithm;
+    final byte[] bytes;
+    private int hash;
+
+    /**
+     * Parses a digest header value like "sha1:UZY6ND6CCHXETFVJD2MSS7ZENMWF7KQ2". The value may be in base32, base16 or
+     * base64 and is decoded directly to bytes.
+     *
+     * @throws IllegalArgumentException if the digest is malformed
+     */
+    public DigestKey(String digest) {
+        int i = digest.indexOf(':');
+        if (i == -1) throw new IllegalArgumentException("Invalid WARC-Digest");
+        this.algorithm = canonicalize(digest.substring(0, i));
+        this.bytes = decode(digest.substring(i + 1), algorithm);
+    }
+
+    public DigestKey(String algorithm, byte[] value) {
+        this.algorithm = canonicalize(algorithm);
+        this.bytes = value.clone();
+    }
+
+    /**
+     * Completes the given digester and takes its result.
+     */
+    public DigestKey(MessageDigest messageDigest) {
+        this.algorithm = canonicalize(messageDigest.getAlgorithm());
+        this.bytes = messageDigest.digest();
+    }
+
+    public DigestKey(WarcDigest digest) {
+        this.algorithm = canonicalize(digest.algorithm());
+        this.bytes = digest.bytes();
+    }
+
+    private static String canonicalize(String algorithm) {
+        // interned so that every key shares one copy of each name
+        return WarcDigest.canonicalizeAlgorithm(algorithm).intern();
+    }
+
+    private static byte[] decode(String value, String algorithm) {
+        int length = digestLength(algorithm);
+        if (length > 0) {
+            // padded base32 of an 8 byte digest is as long as hex
+            if (value.length() == length * 2 && isHex(value)) {
+                return WarcDigest.hexDecode(value);
+            } else if (value.length() < (length * 8 + 4) / 5 && value.length() >= (length * 8 + 5) / 6) {
+                // shorter than unpadded base32 but at least as long as unpadded base64
+                return Base64.getDecoder().decode(value);
+            }
+        }
+        return WarcDigest.base32Decode(value);
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) return false;
+        }
+        return true;
+    }
+
+    private static int digestLength(String algorithm) {
+        switch (algorithm) {
+            case "xxh64":
+                return 8;
+            case "md5":
+                return 16;
+            case "sha1":
+                return 20;
+            case "sha256":
+            case "blake3":
+                return 32;
+            case "sha384":
+                return 48;
+            case "sha512":
+                return 64;
+            default:
+                try {
+                    return WarcDigest.getDigester(algorithm).getDigestLength();
+                } catch (NoSuchAlgorithmException e) {
+                    return -1;
+                }
+        }
+    }
+
+    public String algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns a copy of the digest bytes.
+     */
+    public byte[] bytes() {
+        return bytes.clone();
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    public WarcDigest toWarcDigest() {
+        return new WarcDigest(algorithm, bytes);
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + ":" + WarcDigest.base32Encode(bytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DigestKey key = (DigestKey) o;
+        return algorithm.equals(key.algorithm) && Arrays.equals(bytes, key.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = algorithm.hashCode() * 31 + Arrays.hashCode(bytes);
+            hash = h;
+        }
+        return h;
+    }
+}
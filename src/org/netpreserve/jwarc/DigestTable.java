@@ -0,0 +1,244 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A hash table from digests to a pair of primitive values (a long and an int). Entries are stored inline in parallel
+ * arrays using open addressing with linear probing, so there are no per-entry objects: a SHA-1 entry costs about
+ * 40 bytes plus free slots rather than the several hundred of a {@code HashMap<WarcDigest, ...>}. This allows tens of
+ * millions of digests to be held in an ordinary heap.
+ * <p>
+ * Lookups return a slot index whose values can then be read with {@link #longValue(int)} and {@link #intValue(int)}.
+ * An index is only valid until the table is next modified.
+ * <p>
+ * Not thread-safe.
+ */
+public class DigestTable {
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int MAX_ALGORITHMS = 0x7fff;
+
+    private final List<String> algorithms = new ArrayList<>();
+    /**
+     * Algorithm number (from 1) in the high half and digest length in the low half. Zero marks an empty slot.
+     */
+    private int[] tags;
+    private long[] keys;
+    private long[] longValues;
+    private int[] intValues;
+    private int words; // key words per slot
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public DigestTable() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of entries to allocate room for up front
+     */
+    public DigestTable(int expectedSize) {
+        allocate(capacityFor(expectedSize), 0);
+    }
+
+    private static int capacityFor(int size) {
+        long needed = Math.max(4, (long) size * 4 / 3 + 1);
+        if (needed > MAX_CAPACITY) throw new IllegalArgumentException("Too many entries: " + size);
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    private void allocate(int capacity, int words) {
+        tags = new int[capacity];
+        keys = new long[Math.multiplyExact(capacity, words)];
+        longValues = new long[capacity];
+        intValues = new int[capacity];
+        this.words = words;
+        mask = capacity - 1;
+        resizeAt = (int) ((long) capacity * 3 / 4);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the slot index of the given digest or -1 if it isn't in the table.
+     */
+    public int indexOf(DigestKey key) {
+        int tag = tag(key, false);
+        if (tag == 0) return -1;
+        byte[] bytes = key.bytes;
+        for (int slot = homeSlot(word(bytes, 0), tag); ; slot = (slot + 1) & mask) {
+            if (tags[slot] == 0) return -1;
+            if (tags[slot] == tag && matches(slot, bytes)) return slot;
+        }
+    }
+
+    public boolean containsKey(DigestKey key) {
+        return indexOf(key) >= 0;
+    }
+
+    public long longValue(int index) {
+        checkIndex(index);
+        return longValues[index];
+    }
+
+    public int intValue(int index) {
+        checkIndex(index);
+        return intValues[index];
+    }
+
+    /**
+     * Adds or replaces the values for a digest.
+     *
+     * @return true if the digest was not already in the table
+     */
+    public boolean put(DigestKey key, long longValue, int intValue) {
+        int tag = tag(key, true);
+        byte[] bytes = key.bytes;
+        int keyWords = (bytes.length + 7) / 8;
+        if (keyWords > words) {
+            rehash(tags.length, keyWords);
+        }
+        int slot = homeSlot(word(bytes, 0), tag);
+        for (; tags[slot] != 0; slot = (slot + 1) & mask) {
+            if (tags[slot] == tag && matches(slot, bytes)) {
+                longValues[slot] = longValue;
+                intValues[slot] = intValue;
+                return false;
+            }
+        }
+        if (size >= resizeAt) {
+            if (tags.length == MAX_CAPACITY) throw new IllegalStateException("DigestTable is full");
+            rehash(tags.length * 2, words);
+            return put(key, longValue, intValue);
+        }
+        tags[slot] = tag;
+        for (int i = 0; i < words; i++) {
+            keys[slot * words + i] = word(bytes, i);
+        }
+        longValues[slot] = longValue;
+        intValues[slot] = intValue;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a digest from the table.
+     *
+     * @return true if the digest was in the table
+     */
+    public boolean remove(DigestKey key) {
+        int slot = indexOf(key);
+        if (slot < 0) return false;
+        // backward shift deletion: pull later entries of the probe sequence into the gap so lookups needn't
+        // skip over tombstones
+        int gap = slot;
+        for (int next = (gap + 1) & mask; tags[next] != 0; next = (next + 1) & mask) {
+            int home = homeSlot(firstWord(next), tags[next]);
+            // an entry must stay put if its home slot lies cyclically within (gap, next]
+            boolean stays = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+            if (!stays) {
+                moveSlot(next, gap);
+                gap = next;
+            }
+        }
+        tags[gap] = 0;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(tags, 0);
+        size = 0;
+    }
+
+    private void moveSlot(int from, int to) {
+        tags[to] = tags[from];
+        System.arraycopy(keys, from * words, keys, to * words, words);
+        longValues[to] = longValues[from];
+        intValues[to] = intValues[from];
+    }
+
+    private void rehash(int capacity, int newWords) {
+        int[] oldTags = tags;
+        long[] oldKeys = keys;
+        long[] oldLongValues = longValues;
+        int[] oldIntValues = intValues;
+        int oldWords = words;
+        allocate(capacity, newWords);
+        for (int i = 0; i < oldTags.length; i++) {
+            int tag = oldTags[i];
+            if (tag == 0) continue;
+            int slot = homeSlot(oldWords == 0 ? 0 : oldKeys[i * oldWords], tag);
+            while (tags[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            tags[slot] = tag;
+            System.arraycopy(oldKeys, i * oldWords, keys, slot * words, oldWords);
+            longValues[slot] = oldLongValues[i];
+            intValues[slot] = oldIntValues[i];
+        }
+    }
+
+    private int tag(DigestKey key, boolean add) {
+        if (key.bytes.length > 0xffff) throw new IllegalArgumentException("Digest too long");
+        int number = algorithms.indexOf(key.algorithm) + 1;
+        if (number == 0) {
+            if (!add) return 0;
+            if (algorithms.size() >= MAX_ALGORITHMS) throw new IllegalStateException("Too many digest algorithms");
+            algorithms.add(key.algorithm);
+            number = algorithms.size();
+        }
+        return number << 16 | key.bytes.length;
+    }
+
+    private int homeSlot(long firstWord, int tag) {
+        // digests are usually already uniformly distributed but mix anyway in case of weak or truncated ones
+        long h = firstWord ^ tag * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private long firstWord(int slot) {
+        return words == 0 ? 0 : keys[slot * words];
+    }
+
+    private boolean matches(int slot, byte[] bytes) {
+        int base = slot * words;
+        for (int i = 0, n = (bytes.length + 7) / 8; i < n; i++) {
+            if (keys[base + i] != word(bytes, i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the i-th 8 byte word of a digest, zero-padded.
+     */
+    private static long word(byte[] bytes, int i) {
+        long word = 0;
+        for (int j = i * 8, end = Math.min(j + 8, bytes.length); j < end; j++) {
+            word = word << 8 | (bytes[j] & 0xff);
+        }
+        return word;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= tags.length || tags[index] == 0) {
+            throw new IndexOutOfBoundsException("No entry at index " + index);
+        }
+    }
+}
@@ -10,14 +10,18 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 
 /**
- * Wrapper around a MessageBody which calculates a MessageDigest while the body
+ * Wrapper around a MessageBody which calculates one or more digests while the body
  * is read.
  */
 class DigestingMessageBody extends MessageBody {
     private final MessageBody body;
-    private final MessageDigest digest;
+    private final MultiDigest digest;
 
     DigestingMessageBody(MessageBody digestedBody, MessageDigest digest) {
+        this(digestedBody, new MultiDigest(digest));
+    }
+
+    DigestingMessageBody(MessageBody digestedBody, MultiDigest digest) {
         this.body = digestedBody;
         this.digest = digest;
     }
@@ -49,7 +53,7 @@ class DigestingMessageBody extends MessageBody {
         return body.position();
     }
 
-    public MessageDigest getDigest() {
+    public MultiDigest getDigest() {
         return digest;
     }
 
@@ -19,6 +19,10 @@ public class FetchOptions {
     long maxTime = 0;
     int readTimeout = 60000;
     String userAgent = "jwarc";
+    boolean keepAlive = true;
+    int concurrency = 8;
+    int perHostConcurrency = 2;
+    long perHostDelay = 0;
     OutputStream copyTo;
 
     /**
@@ -60,6 +64,46 @@ public class FetchOptions {
         return this;
     }
 
+    /**
+     * Whether to send HTTP/1.1 requests and keep the connection open afterwards for reuse by later fetches to the same
+     * host. If false an HTTP/1.0 request is sent with "Connection: close". Default: true
+     * <p>
+     * A custom HTTP request will only reuse connections if it is HTTP/1.1 and doesn't ask for the connection to be
+     * closed.
+     */
+    public FetchOptions keepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of fetches {@link WarcWriter#fetchAll(Iterable, FetchOptions)} runs at once. Default: 8
+     */
+    public FetchOptions concurrency(int fetches) {
+        if (fetches < 1) throw new IllegalArgumentException("concurrency must be at least 1");
+        this.concurrency = fetches;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of fetches {@link WarcWriter#fetchAll(Iterable, FetchOptions)} runs at once against
+     * the same host. Default: 2
+     */
+    public FetchOptions perHostConcurrency(int fetches) {
+        if (fetches < 1) throw new IllegalArgumentException("perHostConcurrency must be at least 1");
+        this.perHostConcurrency = fetches;
+        return this;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds between {@link WarcWriter#fetchAll(Iterable, FetchOptions)} starting
+     * fetches against the same host. Default: 0
+     */
+    public FetchOptions perHostDelay(long millis) {
+        this.perHostDelay = millis;
+        return this;
+    }
+
     /**
      * If specified the response will also be copied to this OutputStream as well as the WARC file.
      */
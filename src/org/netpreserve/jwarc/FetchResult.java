@@ -5,21 +5,32 @@
 
 package org.netpreserve.jwarc;
 
+import java.net.URI;
+
 /**
  * The result of a fetch operation. This contains the request and response as WARC records (without payloads) so that
  * the request and response headers can be inspected.
  */
 public class FetchResult {
+    private final URI uri;
     private final WarcRequest request;
     private final WarcResponse response;
     private final Throwable exception;
 
-    FetchResult(WarcRequest request, WarcResponse response, Throwable exception) {
+    FetchResult(URI uri, WarcRequest request, WarcResponse response, Throwable exception) {
+        this.uri = uri;
         this.request = request;
         this.response = response;
         this.exception = exception;
     }
 
+    /**
+     * The URI that was fetched.
+     */
+    public URI uri() {
+        return uri;
+    }
+
     /**
      * The WARC record containing the request that was sent. The request body will not be readable.
      */
@@ -37,6 +48,9 @@ public class FetchResult {
     /**
      * If the fetch was interrupted by an exception but truncated records were still written this will return the caught
      * exception. This can occur if the WarcWriter was closed during the fetch.
+     * <p>
+     * For results from {@link WarcWriter#fetchAll(Iterable, FetchOptions)} this is also set when the fetch failed
+     * entirely, in which case {@link #request()} and {@link #response()} will be null.
      */
     public Throwable exception() {
         return exception;
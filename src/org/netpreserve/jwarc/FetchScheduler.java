@@ -0,0 +1,237 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * The scheduler behind {@link WarcWriter#fetchAll(Iterable, FetchOptions)}. A scheduler thread pulls URIs from the
+ * iterable (without holding the lock) into per-host queues and starts a fetch whenever the overall and per-host
+ * concurrency limits and the per-host delay allow. Fetches run on virtual threads when the JDK supports them and
+ * otherwise on a fixed pool of platform threads. Results are handed to the consumer in the order they finish.
+ */
+class FetchScheduler {
+    private static final FetchResult END = new FetchResult(null, null, null, null);
+    private static final long MAX_WAIT_MILLIS = 100;
+    private static final int PULL_BATCH = 64;
+
+    private final WarcWriter writer;
+    private final FetchOptions options;
+    private final Iterator<URI> uris;
+    private final ExecutorService executor;
+    private final BlockingQueue<FetchResult> results = new LinkedBlockingQueue<>();
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final int lookahead;
+    private final int maxBufferedResults;
+    private int queued;
+    private int running;
+    private volatile boolean cancelled;
+    private volatile RuntimeException failure;
+
+    FetchScheduler(WarcWriter writer, Iterable<URI> uris, FetchOptions options) {
+        this.writer = writer;
+        this.options = options;
+        this.uris = uris.iterator();
+        this.lookahead = Math.max(1000, options.concurrency * 16);
+        this.maxBufferedResults = options.concurrency * 2;
+        this.executor = newExecutor(options.concurrency);
+    }
+
+    Stream<FetchResult> start() {
+        Thread thread = new Thread(this::schedule, "jwarc-fetch-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+        Iterator<FetchResult> iterator = new Iterator<FetchResult>() {
+            FetchResult next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = results.take();
+                    } catch (InterruptedException e) {
+                        cancel();
+                        Thread.currentThread().interrupt();
+                        next = END;
+                    }
+                }
+                if (next == END) {
+                    RuntimeException failure = FetchScheduler.this.failure;
+                    if (failure != null) throw failure;
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public FetchResult next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                FetchResult result = next;
+                next = null;
+                synchronized (FetchScheduler.this) {
+                    FetchScheduler.this.notifyAll(); // room for more results
+                }
+                return result;
+            }
+        };
+        return StreamSupport.stream(spliteratorUnknownSize(iterator, NONNULL), false).onClose(this::cancel);
+    }
+
+    /**
+     * Stops starting new fetches. Fetches already running will be allowed to finish.
+     */
+    void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void schedule() {
+        try {
+            boolean exhausted = false;
+            while (!cancelled) {
+                // pull URIs without holding the lock so a slow source doesn't hold up fetches that are finishing
+                int room;
+                synchronized (this) {
+                    room = Math.min(PULL_BATCH, lookahead - queued);
+                }
+                for (int i = 0; i < room && !exhausted; i++) {
+                    if (!uris.hasNext()) {
+                        exhausted = true;
+                        break;
+                    }
+                    URI uri = uris.next();
+                    synchronized (this) {
+                        Host host = hosts.computeIfAbsent(hostKey(uri), k -> new Host());
+                        host.queue.add(uri);
+                        queued++;
+                        // start it now in case the source blocks before returning the next URI
+                        startFetches(host, System.currentTimeMillis());
+                    }
+                }
+                synchronized (this) {
+                    if (exhausted && queued == 0 && running == 0) break;
+                    long wait = startReadyFetches();
+                    // keep pulling while there's room for more URIs, otherwise wait for a fetch or delay to finish
+                    if (wait > 0 && (exhausted || queued >= lookahead)) wait(Math.min(wait, MAX_WAIT_MILLIS));
+                }
+            }
+            synchronized (this) {
+                while (running > 0) {
+                    wait();
+                }
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // give up
+        } finally {
+            executor.shutdown();
+            results.add(END);
+        }
+    }
+
+    /**
+     * Starts every fetch that the limits currently allow.
+     *
+     * @return how long to wait before trying again
+     */
+    private long startReadyFetches() {
+        long now = System.currentTimeMillis();
+        long wait = MAX_WAIT_MILLIS;
+        for (Iterator<Host> iterator = hosts.values().iterator(); iterator.hasNext(); ) {
+            Host host = iterator.next();
+            if (host.queue.isEmpty()) {
+                if (host.active == 0 && host.nextAllowed <= now) iterator.remove();
+                continue;
+            }
+            if (running >= options.concurrency || results.size() >= maxBufferedResults) break;
+            long hostWait = startFetches(host, now);
+            if (hostWait > 0) wait = Math.min(wait, hostWait);
+        }
+        return wait;
+    }
+
+    /**
+     * Starts fetches from a host's queue while the limits allow.
+     *
+     * @return how long until the host's delay has passed or 0 if it isn't waiting on the delay
+     */
+    private long startFetches(Host host, long now) {
+        while (!host.queue.isEmpty() && running < options.concurrency && results.size() < maxBufferedResults
+               && host.active < options.perHostConcurrency) {
+            if (host.nextAllowed > now) return host.nextAllowed - now;
+            URI uri = host.queue.poll();
+            queued--;
+            host.active++;
+            running++;
+            // space out the start of each fetch so a host is never hit faster than the delay allows
+            host.nextAllowed = now + options.perHostDelay;
+            try {
+                executor.execute(() -> fetch(host, uri));
+            } catch (RejectedExecutionException e) {
+                host.active--;
+                running--;
+                throw e;
+            }
+        }
+        return 0;
+    }
+
+    private void fetch(Host host, URI uri) {
+        FetchResult result;
+        try {
+            result = writer.fetch(uri, options);
+        } catch (IOException | RuntimeException e) {
+            result = new FetchResult(uri, null, null, e);
+        }
+        results.add(result);
+        synchronized (this) {
+            host.active--;
+            running--;
+            notifyAll();
+        }
+    }
+
+    private static String hostKey(URI uri) {
+        String host = uri.getHost();
+        return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Uses a virtual thread per fetch if available (JDK 21+) and otherwise a fixed pool of daemon threads.
+     */
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "jwarc-fetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static class Host {
+        final Deque<URI> queue = new ArrayDeque<>();
+        int active;
+        long nextAllowed;
+    }
+}
@@ -34,8 +34,8 @@ public class GunzipChannel implements ReadableByteChannel, DecompressingChannel
     public GunzipChannel(ReadableByteChannel channel, ByteBuffer buffer) throws IllegalArgumentException {
         this.channel = channel;
         this.buffer = buffer;
-        if (!buffer.hasArray()) {
-            throw new IllegalArgumentException("ByteBuffer must be array-backed and writable");
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("ByteBuffer must be writable");
         }
         buffer.order(ByteOrder.LITTLE_ENDIAN);
     }
@@ -57,14 +57,17 @@ public class GunzipChannel implements ReadableByteChannel, DecompressingChannel
                     if (!readAtLeast(1)) {
                         throw new EOFException("unexpected end of gzip stream");
                     }
-                    inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    IOUtils.setInput(inflater, buffer);
                 }
 
-                int n = inflater.inflate(dest.array(), dest.arrayOffset() + dest.position(), dest.remaining());
+                int destStart = dest.position();
+                int n = IOUtils.inflate(inflater, dest);
                 if (crc != null) {
-                    crc.update(dest.array(), dest.arrayOffset() + dest.position(), n);
+                    ByteBuffer inflated = dest.duplicate();
+                    inflated.position(destStart);
+                    inflated.limit(destStart + n);
+                    crc.update(inflated);
                 }
-                dest.position(dest.position() + n);
 
                 int newBufferPosition = buffer.limit() - inflater.getRemaining();
                 inputPosition += newBufferPosition - buffer.position();
@@ -173,6 +176,14 @@ public class GunzipChannel implements ReadableByteChannel, DecompressingChannel
         return true;
     }
 
+    /**
+     * Returns true if the four bytes at the given offset could be the start of a gzip member header.
+     */
+    static boolean looksLikeHeader(byte[] bytes, int offset) {
+        return bytes[offset] == (byte) GZIP_MAGIC && bytes[offset + 1] == (byte) (GZIP_MAGIC >> 8)
+               && bytes[offset + 2] == CM_DEFLATE && (bytes[offset + 3] & 0xe0) == 0;
+    }
+
     private boolean readAtLeast(int n) throws IOException {
         while (buffer.remaining() < n) {
             buffer.compact();
@@ -190,6 +201,7 @@ public class GunzipChannel implements ReadableByteChannel, DecompressingChannel
 
     @Override
     public void close() throws IOException {
+        inflater.end();
         channel.close();
     }
 
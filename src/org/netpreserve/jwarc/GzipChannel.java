@@ -22,7 +22,7 @@ import java.util.zip.Deflater;
  * specification</a>, see {@link #finish()}.
  * 
  */
-class GzipChannel implements WritableByteChannel {
+class GzipChannel implements CompressingChannel {
 
     static final short GZIP_MAGIC = (short) 0x8b1f;
     static final int CM_DEFLATE = Deflater.DEFLATED;
@@ -51,8 +51,8 @@ class GzipChannel implements WritableByteChannel {
     public GzipChannel(WritableByteChannel channel, ByteBuffer buffer) throws IOException, IllegalArgumentException {
         this.channel = channel;
         this.buffer = buffer;
-        if (!buffer.hasArray()) {
-            throw new IllegalArgumentException("ByteBuffer must be array-backed and writable");
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("ByteBuffer must be writable");
         }
         this.buffer.order(ByteOrder.LITTLE_ENDIAN);
     }
@@ -90,10 +90,8 @@ class GzipChannel implements WritableByteChannel {
 
         int clen;
         int cwritten = 0;
-        while ((clen = deflater.deflate(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
-                Deflater.FULL_FLUSH)) > 0) {
+        while ((clen = IOUtils.deflate(deflater, buffer, Deflater.FULL_FLUSH)) > 0) {
             cwritten += clen;
-            buffer.position(buffer.position() + clen);
             buffer.flip();
             outputPosition += channel.write(buffer);
             buffer.compact();
@@ -121,51 +119,74 @@ class GzipChannel implements WritableByteChannel {
 
     @Override
     public void close() throws IOException {
-        if (!finished) {
-            // finish current gzip member if not done explicitly by calling finish()
-            finish();
+        try {
+            if (!finished) {
+                // finish current gzip member if not done explicitly by calling finish()
+                finish();
+            }
+        } finally {
+            deflater.end();
+            channel.close();
         }
-        channel.close();
     }
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        byte[] srcBytes;
-        int off = src.position();
         int len = src.remaining();
         if (len == 0) {
             // nothing to write
             return 0;
-        } else if ( src.hasArray() ) {
-            srcBytes = src.array();
-            src.position(len);
-            src.limit(len);
-        } else {
-            off = 0;
-            srcBytes = new byte[len];
-            src.get(srcBytes);
         }
 
-        crc.update(srcBytes, off, len);
-        deflater.setInput(srcBytes, off, len);
+        crc.update(src.duplicate());
+        IOUtils.setInput(deflater, src);
 
         checkStatus(false);
 
         int clen;
         while (!deflater.needsInput()) {
-            clen = deflater.deflate(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
-                    Deflater.NO_FLUSH);
+            clen = IOUtils.deflate(deflater, buffer, Deflater.NO_FLUSH);
             if (clen > 0) {
-                buffer.position(buffer.position() + clen);
                 buffer.flip();
                 outputPosition += channel.write(buffer);
                 buffer.compact();
             }
         }
 
+        src.position(src.limit());
         return len;
     }
 
+    /**
+     * Sets the deflate level used from the next gzip member on. Must only be called between members.
+     */
+    void setLevel(int level) {
+        if (headerWritten) {
+            throw new IllegalStateException("current gzip member not finished");
+        }
+        deflater.setLevel(level);
+    }
+
+    /**
+     * Writes a complete gzip member that was compressed elsewhere (e.g. by another GzipChannel) directly to the
+     * underlying channel. Must only be called between members.
+     *
+     * @return the number of bytes written
+     */
+    int writeMember(ByteBuffer member) throws IOException {
+        if (headerWritten) {
+            throw new IllegalStateException("current gzip member not finished");
+        }
+        int written = 0;
+        while (member.hasRemaining()) {
+            written += channel.write(member);
+        }
+        outputPosition += written;
+        dataWritten = true;
+        finished = true;
+        return written;
+    }
+
     public long outputPosition() {
         return outputPosition;
     }
@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serializes message headers straight into a reusable byte array, encoding UTF-8 and ISO-8859-1 by hand instead of
+ * building a String first.
+ */
+class HeaderEncoder implements Appendable {
+    private byte[] bytes = new byte[1024];
+    private int length;
+    private Charset charset = UTF_8;
+
+    /**
+     * Serializes the header of a message. The returned buffer is only valid until the next call.
+     */
+    ByteBuffer encode(Message message) {
+        length = 0;
+        charset = message.headerCharset();
+        try {
+            message.serializeHeaderTo(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) {
+        ensureCapacity(end - start);
+        if (charset.equals(UTF_8)) {
+            encodeUtf8(csq, start, end);
+        } else if (charset.equals(ISO_8859_1)) {
+            for (int i = start; i < end; i++) {
+                char c = csq.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                    i++; // one replacement per code point
+                }
+                bytes[length++] = c <= 0xff ? (byte) c : (byte) '?';
+            }
+        } else {
+            byte[] encoded = csq.subSequence(start, end).toString().getBytes(charset);
+            ensureCapacity(encoded.length);
+            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+            length += encoded.length;
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+        ensureCapacity(1);
+        if (c < 0x80) {
+            bytes[length++] = (byte) c;
+            return this;
+        }
+        return append(String.valueOf(c));
+    }
+
+    private void encodeUtf8(CharSequence csq, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+                continue;
+            }
+            ensureCapacity(4 + end - i);
+            if (c < 0x800) {
+                bytes[length++] = (byte) (0xc0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, csq.charAt(++i));
+                bytes[length++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                bytes[length++] = '?'; // unpaired surrogate, as String.getBytes() does
+            } else {
+                bytes[length++] = (byte) (0xe0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (length + n > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+        }
+    }
+}
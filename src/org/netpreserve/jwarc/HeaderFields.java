@@ -0,0 +1,109 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Accumulates header fields as raw bytes while parsing. Used by the parsers to build {@link MessageHeaders} without
+ * decoding any strings up front.
+ */
+class HeaderFields {
+    private final Charset valueCharset;
+    private byte[] bytes = new byte[1024];
+    private int length;
+    private int[] offsets = new int[64];
+    private int count;
+
+    HeaderFields(Charset valueCharset) {
+        this.valueCharset = valueCharset;
+    }
+
+    void clear() {
+        length = 0;
+        count = 0;
+        if (bytes.length > 65536) {
+            bytes = new byte[1024]; // release the buffer if a huge header made it grow
+        }
+    }
+
+    /**
+     * Starts a new field with the given name.
+     */
+    void name(byte[] src, int off, int len) {
+        ensureFieldCapacity();
+        offsets[count * 4] = length;
+        append(src, off, len);
+        offsets[count * 4 + 1] = length;
+    }
+
+    /**
+     * Starts a new field with the given name, ignoring leading and trailing whitespace and control characters.
+     */
+    void trimmedName(byte[] src, int off, int len) {
+        int end = off + len;
+        while (off < end && (src[off] & 0xff) <= ' ') off++;
+        while (end > off && (src[end - 1] & 0xff) <= ' ') end--;
+        name(src, off, end - off);
+    }
+
+    /**
+     * Completes the current field with the given value.
+     */
+    void value(byte[] src, int off, int len) {
+        offsets[count * 4 + 2] = length;
+        append(src, off, len);
+        offsets[count * 4 + 3] = length;
+        count++;
+    }
+
+    /**
+     * Adds a field replacing any existing fields with the same name.
+     */
+    void set(String name, String value) {
+        byte[] nameBytes = name.getBytes(US_ASCII);
+        for (int i = 0; i < count; i++) {
+            int start = offsets[i * 4];
+            if (start >= 0 && MessageHeaders.equalsIgnoreCase(bytes, start, offsets[i * 4 + 1], name)) {
+                offsets[i * 4] = -1;
+            }
+        }
+        name(nameBytes, 0, nameBytes.length);
+        byte[] valueBytes = value.getBytes(valueCharset);
+        value(valueBytes, 0, valueBytes.length);
+    }
+
+    MessageHeaders toHeaders() {
+        return new MessageHeaders(Arrays.copyOf(bytes, length), Arrays.copyOf(offsets, count * 4), count,
+                valueCharset);
+    }
+
+    /**
+     * Like {@link #toHeaders()} but copies the fields into an existing instance previously returned by this method.
+     */
+    MessageHeaders toHeaders(MessageHeaders recycled) {
+        if (recycled == null) return toHeaders();
+        recycled.recycle(bytes, length, offsets, count);
+        return recycled;
+    }
+
+    private void ensureFieldCapacity() {
+        if ((count + 1) * 4 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+    }
+
+    private void append(byte[] src, int off, int len) {
+        if (length + len > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + len));
+        }
+        System.arraycopy(src, off, bytes, length, len);
+        length += len;
+    }
+}
@@ -32,8 +32,7 @@ public class HttpParser extends MessageParser {
     private String reason;
     private String method;
     private String target;
-    private String name;
-    private Map<String,List<String>> headerMap;
+    private final HeaderFields headerFields = new HeaderFields(ISO_8859_1);
 
 	public HttpParser() {
         reset();
@@ -57,8 +56,7 @@ public class HttpParser extends MessageParser {
         reason = null;
         method = null;
         target = null;
-        name = null;
-        headerMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headerFields.clear();
         endOfText = 0;
         position = 0;
         finished = false;
@@ -66,7 +64,14 @@ public class HttpParser extends MessageParser {
     }
 
     public MessageHeaders headers() {
-        return new MessageHeaders(headerMap);
+        return headerFields.toHeaders();
+    }
+
+    /**
+     * Returns the parsed headers, overwriting the given instance previously returned by this method if non-null.
+     */
+    MessageHeaders headers(MessageHeaders recycled) {
+        return headerFields.toHeaders(recycled);
     }
 
     public MessageVersion version() {
@@ -293,15 +298,14 @@ case 1:
 	case 11:
 // line 28 "HttpParser.rl"
 	{
-    name = new String(buf, 0, bufPos, US_ASCII).trim();
+    headerFields.trimmedName(buf, 0, bufPos);
     bufPos = 0;
 }
 	break;
 	case 12:
 // line 33 "HttpParser.rl"
 	{
-    String value = new String(buf, 0, endOfText, ISO_8859_1);
-    headerMap.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+    headerFields.value(buf, 0, endOfText);
     bufPos = 0;
     endOfText = 0;
 }
@@ -347,8 +351,7 @@ case 4:
 	case 12:
 // line 33 "HttpParser.rl"
 	{
-    String value = new String(buf, 0, endOfText, ISO_8859_1);
-    headerMap.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+    headerFields.value(buf, 0, endOfText);
     bufPos = 0;
     endOfText = 0;
 }
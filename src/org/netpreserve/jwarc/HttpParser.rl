@@ -26,13 +26,12 @@ action fold {
 }
 
 action handle_name  {
-    name = new String(buf, 0, bufPos, US_ASCII).trim();
+    headerFields.trimmedName(buf, 0, bufPos);
     bufPos = 0;
 }
 
 action handle_value {
-    String value = new String(buf, 0, endOfText, ISO_8859_1);
-    headerMap.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+    headerFields.value(buf, 0, endOfText);
     bufPos = 0;
     endOfText = 0;
 }
@@ -139,8 +138,7 @@ public class HttpParser extends MessageParser {
     private String reason;
     private String method;
     private String target;
-    private String name;
-    private Map<String,List<String>> headerMap;
+    private final HeaderFields headerFields = new HeaderFields(ISO_8859_1);
 
 	public HttpParser() {
         reset();
@@ -158,8 +156,7 @@ public class HttpParser extends MessageParser {
         reason = null;
         method = null;
         target = null;
-        name = null;
-        headerMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headerFields.clear();
         endOfText = 0;
         position = 0;
         finished = false;
@@ -167,7 +164,14 @@ public class HttpParser extends MessageParser {
     }
 
     public MessageHeaders headers() {
-        return new MessageHeaders(headerMap);
+        return headerFields.toHeaders();
+    }
+
+    /**
+     * Returns the parsed headers, overwriting the given instance previously returned by this method if non-null.
+     */
+    MessageHeaders headers(MessageHeaders recycled) {
+        return headerFields.toHeaders(recycled);
     }
 
     public MessageVersion version() {
@@ -86,7 +86,16 @@ public class HttpRequest extends HttpMessage {
             copyTo.write(ByteBuffer.wrap(headerBytes));
             copyTo.write(buffer.duplicate());
         }
-        MessageHeaders headers = parser.headers();
+        return create(parser, parser.headers(), headerBytes, channel, buffer, strict);
+    }
+
+    /**
+     * Creates a request from a parser which has read the header. The body continues with the remaining bytes of the
+     * buffer followed by the channel.
+     */
+    static HttpRequest create(HttpParser parser, MessageHeaders headers, byte[] headerBytes,
+                              ReadableByteChannel channel, ByteBuffer buffer, boolean strict) throws IOException {
+        if (headerBytes.length == 0) throw new EOFException();
         MessageBody body;
         if (headers.contains("Transfer-Encoding", "chunked")) {
             body = new ChunkedBody(channel, buffer);
@@ -73,7 +73,16 @@ public class HttpResponse extends HttpMessage {
             copyTo.write(ByteBuffer.wrap(headerBytes));
             copyTo.write(buffer.duplicate());
         }
-        MessageHeaders headers = parser.headers();
+        return create(parser, parser.headers(), headerBytes, channel, buffer, strict, withoutBody);
+    }
+
+    /**
+     * Creates a response from a parser which has read the header. The body continues with the remaining bytes of the
+     * buffer followed by the channel.
+     */
+    static HttpResponse create(HttpParser parser, MessageHeaders headers, byte[] headerBytes,
+                               ReadableByteChannel channel, ByteBuffer buffer, boolean strict,
+                               boolean withoutBody) throws IOException {
         MessageBody body;
         if (withoutBody) {
             body = MessageBody.empty();
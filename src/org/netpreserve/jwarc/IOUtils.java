@@ -5,21 +5,37 @@
 
 package org.netpreserve.jwarc;
 
-import javax.net.ssl.SSLSocketFactory;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.Socket;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.util.Arrays;
-import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * This class is public only due to technical constraints. Please don't depend on it your own code.
  */
 public final class IOUtils {
+    // ByteBuffer methods of Inflater and Deflater were added in Java 11
+    private static final MethodHandle INFLATER_SET_INPUT = findMethod(Inflater.class, "setInput", void.class, ByteBuffer.class);
+    private static final MethodHandle INFLATER_INFLATE = findMethod(Inflater.class, "inflate", int.class, ByteBuffer.class);
+    private static final MethodHandle DEFLATER_SET_INPUT = findMethod(Deflater.class, "setInput", void.class, ByteBuffer.class);
+    private static final MethodHandle DEFLATER_DEFLATE = findMethod(Deflater.class, "deflate", int.class, ByteBuffer.class, int.class);
+
+    private static MethodHandle findMethod(Class<?> clazz, String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.publicLookup().findVirtual(clazz, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
 
     /**
      * Transfers as many bytes as possible from src to dst.
@@ -68,6 +84,99 @@ public final class IOUtils {
         return src.read(dst);
     }
 
+    /**
+     * Sets the inflater's input to the remaining bytes of the buffer. The buffer's position is not changed, callers
+     * should advance it by the number of bytes the inflater consumed.
+     */
+    static void setInput(Inflater inflater, ByteBuffer input) {
+        if (input.hasArray()) {
+            inflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+        } else if (INFLATER_SET_INPUT != null) {
+            invoke(INFLATER_SET_INPUT, inflater, input.duplicate());
+        } else {
+            byte[] copy = new byte[input.remaining()];
+            input.duplicate().get(copy);
+            inflater.setInput(copy);
+        }
+    }
+
+    /**
+     * Inflates into the remaining space of the buffer and advances its position.
+     *
+     * @return the number of bytes inflated.
+     */
+    static int inflate(Inflater inflater, ByteBuffer output) throws DataFormatException {
+        if (output.hasArray()) {
+            int n = inflater.inflate(output.array(), output.arrayOffset() + output.position(), output.remaining());
+            output.position(output.position() + n);
+            return n;
+        } else if (INFLATER_INFLATE != null) {
+            try {
+                return (int) INFLATER_INFLATE.invoke(inflater, output);
+            } catch (DataFormatException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            byte[] bytes = new byte[output.remaining()];
+            int n = inflater.inflate(bytes);
+            output.put(bytes, 0, n);
+            return n;
+        }
+    }
+
+    /**
+     * Sets the deflater's input to the remaining bytes of the buffer. The buffer's position is not changed.
+     */
+    static void setInput(Deflater deflater, ByteBuffer input) {
+        if (input.hasArray()) {
+            deflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+        } else if (DEFLATER_SET_INPUT != null) {
+            invoke(DEFLATER_SET_INPUT, deflater, input.duplicate());
+        } else {
+            byte[] copy = new byte[input.remaining()];
+            input.duplicate().get(copy);
+            deflater.setInput(copy);
+        }
+    }
+
+    /**
+     * Deflates into the remaining space of the buffer and advances its position.
+     *
+     * @return the number of bytes of compressed data written.
+     */
+    static int deflate(Deflater deflater, ByteBuffer output, int flush) {
+        if (output.hasArray()) {
+            int n = deflater.deflate(output.array(), output.arrayOffset() + output.position(), output.remaining(), flush);
+            output.position(output.position() + n);
+            return n;
+        } else if (DEFLATER_DEFLATE != null) {
+            try {
+                return (int) DEFLATER_DEFLATE.invoke(deflater, output, flush);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            byte[] bytes = new byte[output.remaining()];
+            int n = deflater.deflate(bytes, 0, bytes.length, flush);
+            output.put(bytes, 0, n);
+            return n;
+        }
+    }
+
+    private static void invoke(MethodHandle method, Object target, ByteBuffer argument) {
+        try {
+            method.invoke(target, argument);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     static ReadableByteChannel prefixChannel(ByteBuffer prefix, ReadableByteChannel channel) {
         return new ReadableByteChannel() {
             @Override
@@ -115,17 +224,6 @@ public final class IOUtils {
         return new InflateChannel(deflated, buffer);
     }
 
-    static Socket connect(String scheme, String host, int port) throws IOException {
-        Objects.requireNonNull(host);
-        if ("http".equalsIgnoreCase(scheme)) {
-            return new Socket(host, port < 0 ? 80 : port);
-        } else if ("https".equalsIgnoreCase(scheme)) {
-            return SSLSocketFactory.getDefault().createSocket(host, port < 0 ? 443 : port);
-        } else {
-            throw new IllegalArgumentException("Unsupported URI scheme: " + scheme);
-        }
-    }
-
     public static byte[] readNBytes(InputStream stream, int n) throws IOException {
         byte[] buffer = new byte[n];
         for (int remaining = n; remaining > 0; ) {
@@ -25,8 +25,8 @@ public class InflateChannel implements ReadableByteChannel {
     public InflateChannel(ReadableByteChannel channel, ByteBuffer buffer) throws IllegalArgumentException {
         this.channel = channel;
         this.buffer = buffer;
-        if (!buffer.hasArray()) {
-            throw new IllegalArgumentException("ByteBuffer must be array-backed and writable");
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("ByteBuffer must be writable");
         }
     }
 
@@ -42,12 +42,11 @@ public class InflateChannel implements ReadableByteChannel {
                 channel.read(buffer);
                 buffer.flip();
             }
-            inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            IOUtils.setInput(inflater, buffer);
         }
 
         try {
-            int n = inflater.inflate(dest.array(), dest.arrayOffset() + dest.position(), dest.remaining());
-            dest.position(dest.position() + n);
+            int n = IOUtils.inflate(inflater, dest);
 
             int newBufferPosition = buffer.limit() - inflater.getRemaining();
             buffer.position(newBufferPosition);
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.util.Optional;
 
 /**
  * A message body with a known length.
@@ -18,7 +19,7 @@ import java.nio.channels.*;
 public class LengthedBody extends MessageBody {
     private final ReadableByteChannel channel;
     final ByteBuffer buffer;
-    private final long size;
+    private long size;
     long position = 0;
     private boolean open = true;
     ByteBuffer pushback;
@@ -36,6 +37,13 @@ public class LengthedBody extends MessageBody {
         return new LengthedBody(channel, buffer, size);
     }
 
+    /**
+     * Creates a seekable body consisting of the remaining bytes of the given buffer.
+     */
+    static LengthedBody create(ByteBuffer buffer) {
+        return new InMemory(buffer);
+    }
+
     static LengthedBody create(byte[] bytes) {
         return create(Channels.newChannel(new ByteArrayInputStream(new byte[0])), ByteBuffer.wrap(bytes), bytes.length);
     }
@@ -65,11 +73,45 @@ public class LengthedBody extends MessageBody {
         return new LengthedBody(channel, buffer, length);
     }
 
-    synchronized void pushback(byte[] pushback) {
-        if (pushback.length > position) throw new IllegalArgumentException("pushback would result in negative position");
+    /**
+     * Resets this body to read the next {@code size} bytes from the channel and buffer it was created with.
+     */
+    synchronized void recycle(long size) {
+        this.size = size;
+        this.position = 0;
+        this.pushback = null;
+        this.open = true;
+    }
+
+    void pushback(byte[] pushback) {
+        pushback(ByteBuffer.wrap(pushback));
+    }
+
+    synchronized void pushback(ByteBuffer pushback) {
+        if (pushback.remaining() > position) throw new IllegalArgumentException("pushback would result in negative position");
         if (this.pushback != null) throw new IllegalStateException("already pushed back");
-        this.pushback = ByteBuffer.wrap(pushback);
-        position -= pushback.length;
+        this.pushback = pushback;
+        position -= pushback.remaining();
+    }
+
+    /**
+     * Returns up to n bytes from the start of the body without consuming them, or null if reading has already begun.
+     * Bytes pushed back by an earlier parse of the HTTP header count as not yet consumed.
+     */
+    synchronized ByteBuffer peek(int n) throws IOException {
+        if (position != 0) return null;
+        if (pushback != null && pushback.remaining() >= n) {
+            ByteBuffer sample = pushback.asReadOnlyBuffer();
+            sample.limit(sample.position() + n);
+            return sample.slice();
+        }
+        ByteBuffer sample = ByteBuffer.allocate(size < 0 ? n : (int) Math.min(n, size));
+        while (sample.hasRemaining() && read(sample) >= 0) {
+            // fill the sample
+        }
+        sample.flip();
+        pushback(sample.duplicate());
+        return sample.asReadOnlyBuffer();
     }
 
     @Override
@@ -114,6 +156,57 @@ public class LengthedBody extends MessageBody {
         }
     }
 
+    /**
+     * Writes the rest of the body to a channel. When the body is backed by a FileChannel the bytes which haven't
+     * already been buffered are sent with {@link FileChannel#transferTo} so they need not be copied through the heap.
+     *
+     * @return the number of bytes written
+     */
+    synchronized long transferTo(WritableByteChannel target) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        long written = 0;
+        while (position < size && (pushback != null || buffer.hasRemaining())) {
+            ByteBuffer source = pushback != null ? pushback : buffer;
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + (int) Math.min(slice.remaining(), size - position));
+            int n = target.write(slice);
+            source.position(source.position() + n);
+            if (pushback != null && !pushback.hasRemaining()) {
+                pushback = null;
+            }
+            position += n;
+            written += n;
+        }
+        if (channel instanceof FileChannel) {
+            FileChannel file = (FileChannel) channel;
+            while (position < size) {
+                long n = file.transferTo(file.position(), size - position, target);
+                if (n <= 0) {
+                    if (file.position() >= file.size()) {
+                        throw new EOFException("expected " + (size - position) + " more bytes in file");
+                    }
+                    break; // target isn't accepting bytes, fall back to reading
+                }
+                file.position(file.position() + n);
+                position += n;
+                written += n;
+            }
+        }
+        if (position < size) {
+            ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(8192, size - position));
+            while (read(chunk) >= 0) {
+                chunk.flip();
+                while (chunk.hasRemaining()) {
+                    written += target.write(chunk);
+                }
+                chunk.clear();
+            }
+        }
+        return written;
+    }
+
     public synchronized void consume() throws IOException {
         discardPushback();
         while (true) {
@@ -148,6 +241,17 @@ public class LengthedBody extends MessageBody {
         }
     }
 
+    @Override
+    public synchronized Optional<ByteBuffer> asByteBuffer() {
+        long remaining = size - position;
+        if (pushback != null || remaining > buffer.remaining()) {
+            return Optional.empty();
+        }
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.limit(view.position() + (int) remaining);
+        return Optional.of(view.slice());
+    }
+
     void discardPushback() {
         if (pushback != null) {
             position += pushback.remaining();
@@ -224,6 +328,37 @@ public class LengthedBody extends MessageBody {
         return Channels.newInputStream(this);
     }
 
+    /**
+     * A body held entirely in a buffer, such as a slice of a memory-mapped file.
+     */
+    private static class InMemory extends LengthedBody implements SeekableByteChannel {
+        private final int start;
+
+        InMemory(ByteBuffer buffer) {
+            super(Channels.newChannel(new ByteArrayInputStream(new byte[0])), buffer, buffer.remaining());
+            this.start = buffer.position();
+        }
+
+        @Override
+        public synchronized SeekableByteChannel position(long position) {
+            if (position < 0) throw new IllegalArgumentException("negative position");
+            pushback = null;
+            this.position = Math.min(size(), position);
+            buffer.position(start + (int) this.position);
+            return this;
+        }
+
+        @Override
+        public int write(ByteBuffer byteBuffer) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long l) {
+            throw new NonWritableChannelException();
+        }
+    }
+
     private static class Seekable extends LengthedBody implements SeekableByteChannel {
         private final SeekableByteChannel seekable;
 
@@ -0,0 +1,110 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only channel over a file which is memory-mapped in large windows. Reads are served from the mapping without
+ * system calls and {@link #slice(long, long)} provides direct views of the file contents.
+ */
+class MappedChannel implements SeekableByteChannel {
+    static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    MappedChannel(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedChannel(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.size = channel.size();
+        this.position = channel.position();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!isOpen()) throw new ClosedChannelException();
+        if (position >= size) return -1;
+        if (window == null || position < windowStart || position >= windowStart + window.capacity()) {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - windowStart));
+        }
+        ByteBuffer src = window.duplicate();
+        src.position((int) (position - windowStart));
+        int n = IOUtils.transfer(src, dst);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Returns a read-only view of part of the file, or null if the length is too large for a single buffer. The view
+     * is shorter than requested if the file ends first.
+     */
+    ByteBuffer slice(long position, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) return null;
+        length = Math.max(0, Math.min(length, size - position));
+        if (length == 0) return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        if (window != null && position >= windowStart && position + length <= windowStart + window.capacity()) {
+            ByteBuffer src = window.asReadOnlyBuffer();
+            src.position((int) (position - windowStart));
+            src.limit((int) (position - windowStart + length));
+            return src.slice();
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).asReadOnlyBuffer();
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) {
+        if (newPosition < 0) throw new IllegalArgumentException("negative position");
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
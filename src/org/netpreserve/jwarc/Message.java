@@ -7,7 +7,6 @@ package org.netpreserve.jwarc;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
@@ -20,10 +19,11 @@ import java.util.*;
  * WARC.
  */
 public abstract class Message {
-    private final MessageVersion version;
-    private final MessageHeaders headers;
-    private final MessageBody body;
+    private MessageVersion version;
+    private MessageHeaders headers;
+    private MessageBody body;
     byte[] serializedHeader;
+    private MediaType contentType;
 
     Message(MessageVersion version, MessageHeaders headers, MessageBody body) {
         this.version = version;
@@ -31,6 +31,18 @@ public abstract class Message {
         this.body = body;
     }
 
+    /**
+     * Replaces the contents of this message so the object can be reused for another message. Subclasses which cache
+     * values derived from the contents must override this to clear them.
+     */
+    void recycle(MessageVersion version, MessageHeaders headers, MessageBody body) {
+        this.version = version;
+        this.headers = headers;
+        this.body = body;
+        this.serializedHeader = null;
+        this.contentType = null;
+    }
+
     /**
      * The named header fields of this message.
      */
@@ -58,7 +70,10 @@ public abstract class Message {
      * Returns "application/octet-stream" if the Content-Type header is missing.
      */
     public MediaType contentType() {
-        return headers.first("Content-Type").map(MediaType::parseLeniently).orElse(MediaType.OCTET_STREAM);
+        if (contentType == null) {
+            contentType = headers.first("Content-Type").map(MediaType::parseLeniently).orElse(MediaType.OCTET_STREAM);
+        }
+        return contentType;
     }
 
     void serializeHeaderTo(Appendable output) throws IOException {
@@ -77,13 +92,9 @@ public abstract class Message {
      */
     public byte[] serializeHeader() {
         if (serializedHeader == null) {
-            try {
-                StringBuilder sb = new StringBuilder();
-                serializeHeaderTo(sb);
-                serializedHeader = sb.toString().getBytes(headerCharset());
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+            HeaderEncoder encoder = new HeaderEncoder();
+            encoder.encode(this);
+            serializedHeader = encoder.toByteArray();
         }
         return serializedHeader;
     }
@@ -6,6 +6,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.util.Optional;
 
 public abstract class MessageBody extends MessageParser implements ReadableByteChannel {
 
@@ -31,6 +32,15 @@ public abstract class MessageBody extends MessageParser implements ReadableByteC
         return Channels.newInputStream(this);
     }
 
+    /**
+     * Returns the unread part of the body as a read-only buffer if it is already held entirely in memory, such as
+     * when reading a memory-mapped file with {@link WarcReader#mapped(java.nio.file.Path)}. No data is copied and
+     * reading from the returned buffer does not advance the position of this body.
+     */
+    public Optional<ByteBuffer> asByteBuffer() {
+        return Optional.empty();
+    }
+
     public void consume() throws IOException {
         ByteBuffer buffer = ByteBuffer.allocate(8192);
         while (read(buffer) >= 0) {
@@ -8,16 +8,45 @@ package org.netpreserve.jwarc;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Pattern;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.util.Collections.emptyList;
 
 public class MessageHeaders {
     private static Pattern COMMA_SEPARATOR = Pattern.compile("[ \t]*,[ \t]*");
+    private static final String[] WELL_KNOWN_NAMES = {"WARC-Type", "WARC-Record-ID", "WARC-Date", "Content-Length",
+            "Content-Type", "WARC-Target-URI", "WARC-Concurrent-To", "WARC-Block-Digest", "WARC-Payload-Digest",
+            "WARC-IP-Address", "WARC-Refers-To", "WARC-Refers-To-Target-URI", "WARC-Refers-To-Date",
+            "WARC-Truncated", "WARC-Warcinfo-ID", "WARC-Filename", "WARC-Profile", "WARC-Identified-Payload-Type",
+            "WARC-Segment-Number", "WARC-Segment-Origin-ID", "WARC-Segment-Total-Length", "Transfer-Encoding",
+            "Content-Encoding", "Location"};
+    private static final Map<String, Integer> WELL_KNOWN_SLOTS = new HashMap<>();
+    private static final int[] WELL_KNOWN_HASHES = new int[WELL_KNOWN_NAMES.length];
+    static {
+        for (int i = 0; i < WELL_KNOWN_NAMES.length; i++) {
+            WELL_KNOWN_SLOTS.put(WELL_KNOWN_NAMES[i], i);
+            WELL_KNOWN_HASHES[i] = hashIgnoreCase(WELL_KNOWN_NAMES[i]);
+        }
+    }
+
     private Map<String,List<String>> map;
 
+    // When constructed by a parser the fields are kept as raw bytes and only decoded on access. Each field has
+    // four offsets into bytes: name start, name end, value start and value end. Removed fields have a name start
+    // of -1.
+    private byte[] bytes;
+    private int[] offsets;
+    private int count;
+    private final Charset valueCharset;
+    private int[] hashes;
+    private int[] nextWithSameName;
+    private final int[] wellKnownFirst;
+    private String[] values;
+
     public static MessageHeaders of(String... keysAndValues) {
         if (keysAndValues.length % 2 != 0) {
             throw new IllegalArgumentException("an even number keysAndValues must be provided");
@@ -32,37 +61,188 @@ public class MessageHeaders {
     MessageHeaders(Map<String, List<String>> map) {
         map.replaceAll((name, values) -> Collections.unmodifiableList(values));
         this.map = Collections.unmodifiableMap(map);
+        this.bytes = null;
+        this.offsets = null;
+        this.count = 0;
+        this.valueCharset = null;
+        this.hashes = null;
+        this.nextWithSameName = null;
+        this.wellKnownFirst = null;
+        this.values = null;
+    }
+
+    MessageHeaders(byte[] bytes, int[] offsets, int count, Charset valueCharset) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.count = count;
+        this.valueCharset = valueCharset;
+        this.values = new String[count];
+        this.hashes = new int[count];
+        this.nextWithSameName = new int[count];
+        this.wellKnownFirst = new int[WELL_KNOWN_NAMES.length];
+        index();
+    }
+
+    /**
+     * Replaces the fields with a copy of the given ones, reusing the existing arrays when they are large enough. Only
+     * valid for headers created by a parser.
+     */
+    void recycle(byte[] bytes, int length, int[] offsets, int count) {
+        if (this.bytes.length < length) {
+            this.bytes = new byte[length];
+        }
+        System.arraycopy(bytes, 0, this.bytes, 0, length);
+        if (this.offsets.length < count * 4) {
+            this.offsets = new int[count * 4];
+        }
+        System.arraycopy(offsets, 0, this.offsets, 0, count * 4);
+        if (this.values.length < count) {
+            this.values = new String[count];
+            this.hashes = new int[count];
+            this.nextWithSameName = new int[count];
+        } else {
+            Arrays.fill(this.values, null);
+        }
+        this.count = count;
+        this.map = null;
+        index();
+    }
+
+    private void index() {
+        Arrays.fill(wellKnownFirst, -1);
+        for (int i = 0; i < count; i++) {
+            nextWithSameName[i] = -1;
+            if (offsets[i * 4] < 0) continue;
+            int hash = hashIgnoreCase(bytes, offsets[i * 4], offsets[i * 4 + 1]);
+            hashes[i] = hash;
+            int first = find(hash, bytes, offsets[i * 4], offsets[i * 4 + 1], i);
+            if (first >= 0) {
+                int last = first;
+                while (nextWithSameName[last] >= 0) last = nextWithSameName[last];
+                nextWithSameName[last] = i;
+            } else {
+                for (int slot = 0; slot < WELL_KNOWN_NAMES.length; slot++) {
+                    if (WELL_KNOWN_HASHES[slot] == hash && equalsIgnoreCase(bytes, offsets[i * 4],
+                            offsets[i * 4 + 1], WELL_KNOWN_NAMES[slot])) {
+                        wellKnownFirst[slot] = i;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first field before {@code limit} with the given name or -1 if there is none.
+     */
+    private int find(int hash, byte[] name, int start, int end, int limit) {
+        for (int i = 0; i < limit; i++) {
+            int fieldStart = offsets[i * 4];
+            int fieldEnd = offsets[i * 4 + 1];
+            if (fieldStart >= 0 && hashes[i] == hash && fieldEnd - fieldStart == end - start) {
+                boolean equal = true;
+                for (int j = 0; j < end - start && equal; j++) {
+                    equal = toLowerCase(bytes[fieldStart + j]) == toLowerCase(name[start + j]);
+                }
+                if (equal) return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first field with the given name or -1 if there is none.
+     */
+    private int indexOf(String name) {
+        Integer slot = WELL_KNOWN_SLOTS.get(name);
+        if (slot != null) {
+            return wellKnownFirst[slot];
+        }
+        int hash = hashIgnoreCase(name);
+        for (int i = 0; i < count; i++) {
+            int start = offsets[i * 4];
+            if (start >= 0 && hashes[i] == hash && equalsIgnoreCase(bytes, start, offsets[i * 4 + 1], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String value(int field) {
+        String value = values[field];
+        if (value == null) {
+            int start = offsets[field * 4 + 2];
+            value = new String(bytes, start, offsets[field * 4 + 3] - start, valueCharset);
+            values[field] = value;
+        }
+        return value;
     }
 
     /**
      * Returns the value of a single-valued header field. Throws an exception if there are more than one.
      */
     public Optional<String> sole(String name) {
-        List<String> values = all(name);
-        if (values.size() > 1) {
-            throw new IllegalArgumentException("record has " + values.size() + " " + name + " headers");
+        if (bytes == null) {
+            List<String> values = all(name);
+            if (values.size() > 1) {
+                throw new IllegalArgumentException("record has " + values.size() + " " + name + " headers");
+            }
+            return values.stream().findFirst();
+        }
+        int field = indexOf(name);
+        if (field < 0) return Optional.empty();
+        if (nextWithSameName[field] >= 0) {
+            throw new IllegalArgumentException("record has " + all(name).size() + " " + name + " headers");
         }
-        return values.stream().findFirst();
+        return Optional.of(value(field));
     }
 
     /**
      * Returns the first value of a header field.
      */
     public Optional<String> first(String name) {
-        return all(name).stream().findFirst();
+        if (bytes == null) {
+            return all(name).stream().findFirst();
+        }
+        int field = indexOf(name);
+        return field < 0 ? Optional.empty() : Optional.of(value(field));
     }
 
     /**
      * Returns all the values of a header field.
      */
     public List<String> all(String name) {
-        return map.getOrDefault(name, emptyList());
+        if (bytes == null) {
+            return map.getOrDefault(name, emptyList());
+        }
+        int field = indexOf(name);
+        if (field < 0) {
+            return emptyList();
+        } else if (nextWithSameName[field] < 0) {
+            return Collections.singletonList(value(field));
+        }
+        List<String> list = new ArrayList<>();
+        for (; field >= 0; field = nextWithSameName[field]) {
+            list.add(value(field));
+        }
+        return Collections.unmodifiableList(list);
     }
 
     /**
      * Returns a map of header fields to their values.
      */
     public Map<String,List<String>> map() {
+        if (map == null) {
+            Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = 0; i < count; i++) {
+                int start = offsets[i * 4];
+                if (start < 0) continue;
+                String name = new String(bytes, start, offsets[i * 4 + 1] - start, US_ASCII);
+                map.computeIfAbsent(name, n -> new ArrayList<>()).add(value(i));
+            }
+            map.replaceAll((name, values) -> Collections.unmodifiableList(values));
+            this.map = Collections.unmodifiableMap(map);
+        }
         return map;
     }
 
@@ -84,7 +264,7 @@ public class MessageHeaders {
 
     @Override
     public String toString() {
-        return map.toString();
+        return map().toString();
     }
 
     /**
@@ -107,6 +287,34 @@ public class MessageHeaders {
         return parser.headers();
     }
 
+    private static int toLowerCase(int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static int hashIgnoreCase(byte[] bytes, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toLowerCase(bytes[i] & 0xff);
+        }
+        return hash;
+    }
+
+    private static int hashIgnoreCase(String s) {
+        int hash = 0;
+        for (int i = 0; i < s.length(); i++) {
+            hash = 31 * hash + toLowerCase(s.charAt(i));
+        }
+        return hash;
+    }
+
+    static boolean equalsIgnoreCase(byte[] bytes, int start, int end, String s) {
+        if (end - start != s.length()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (toLowerCase(bytes[start + i] & 0xff) != toLowerCase(s.charAt(i))) return false;
+        }
+        return true;
+    }
+
     private static final boolean[] ILLEGAL = initIllegalLookup();
     private static boolean[] initIllegalLookup() {
         boolean[] illegal = new boolean[256];
@@ -132,7 +340,7 @@ public class MessageHeaders {
     }
 
     public void appendTo(Appendable appendable) throws IOException {
-        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+        for (Map.Entry<String, List<String>> entry : map().entrySet()) {
             String name = entry.getKey();
             for (String value : entry.getValue()) {
                 appendable.append(name).append(": ").append(value).append("\r\n");
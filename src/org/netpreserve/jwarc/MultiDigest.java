@@ -0,0 +1,96 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Calculates digests of the same bytes with several algorithms at once, so that for example a SHA-1 for the WARC
+ * headers and a SHA-256 for a WACZ index can be produced while reading a body only once.
+ * <p>
+ * Algorithms are named as in WARC digest headers ("sha1", "sha256", "md5", ...) or by their Java names. The fast
+ * non-cryptographic "xxh64" is built in and "blake3" works if a security provider supplies it.
+ *
+ * @see WarcDigest#getDigester(String)
+ */
+public class MultiDigest {
+    private final MessageDigest[] digesters;
+    private List<WarcDigest> digests;
+
+    public MultiDigest(String... algorithms) throws NoSuchAlgorithmException {
+        this(Arrays.asList(algorithms));
+    }
+
+    /**
+     * @throws NoSuchAlgorithmException if any of the algorithms is unsupported
+     */
+    public MultiDigest(Collection<String> algorithms) throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> digesters = new LinkedHashMap<>();
+        for (String algorithm : algorithms) {
+            String canonical = WarcDigest.canonicalizeAlgorithm(algorithm);
+            if (!digesters.containsKey(canonical)) {
+                digesters.put(canonical, WarcDigest.getDigester(algorithm));
+            }
+        }
+        this.digesters = digesters.values().toArray(new MessageDigest[0]);
+    }
+
+    MultiDigest(MessageDigest digester) {
+        this.digesters = new MessageDigest[]{digester};
+    }
+
+    public void update(byte[] input, int offset, int len) {
+        checkNotFinished();
+        for (MessageDigest digester : digesters) {
+            digester.update(input, offset, len);
+        }
+    }
+
+    /**
+     * Updates the digests with the remaining bytes of the buffer, leaving its position at its limit.
+     */
+    public void update(ByteBuffer buffer) {
+        checkNotFinished();
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            for (MessageDigest digester : digesters) {
+                digester.update(buffer.duplicate());
+            }
+        }
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Completes the calculation and returns a digest for each algorithm in the order they were given. Further calls
+     * return the same digests.
+     */
+    public List<WarcDigest> digests() {
+        if (digests == null) {
+            List<WarcDigest> list = new ArrayList<>(digesters.length);
+            for (MessageDigest digester : digesters) {
+                list.add(new WarcDigest(digester));
+            }
+            digests = Collections.unmodifiableList(list);
+        }
+        return digests;
+    }
+
+    /**
+     * Completes the calculation and returns the digest for the given algorithm.
+     */
+    public Optional<WarcDigest> digest(String algorithm) {
+        String canonical = WarcDigest.canonicalizeAlgorithm(algorithm);
+        return digests().stream().filter(d -> d.algorithm().equals(canonical)).findFirst();
+    }
+
+    private void checkNotFinished() {
+        if (digests != null) throw new IllegalStateException("digest already completed");
+    }
+}
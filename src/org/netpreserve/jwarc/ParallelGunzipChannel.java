@@ -0,0 +1,343 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses a multi-member gzip file using a pool of worker threads.
+ * <p>
+ * The file is divided into fixed size chunks. Each worker scans its chunk for the first gzip member header and
+ * inflates every member that starts within the chunk. As the scan can be fooled by data that merely looks like a gzip
+ * header (such as an uncompressed .gz payload inside a stored deflate block) the consumer only accepts a member if it
+ * starts exactly where the previous member ended. Otherwise it falls back to inflating the member itself.
+ * <p>
+ * Like {@link GunzipChannel} a read never crosses a member boundary so that {@link #inputPosition()} can be used to
+ * determine record offsets. Workers hold each member fully inflated in memory, up to {@link #DEFAULT_MAX_MEMBER_SIZE}.
+ * Larger members are streamed by the consumer instead.
+ */
+class ParallelGunzipChannel implements ReadableByteChannel, DecompressingChannel {
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    static final int DEFAULT_MAX_MEMBER_SIZE = 16 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final ArrayDeque<Future<Chunk>> chunks = new ArrayDeque<>();
+    private long startPosition;
+    private long nextChunkStart;
+    private long nextMemberOffset;
+    private long size;
+    private Chunk chunk;
+    private int memberIndex;
+    private Member member;
+    private int memberPosition;
+    private long memberCount;
+    private GunzipChannel streamingMember;
+    private long streamingInputStart;
+    private boolean open = true;
+    int maxMemberSize = DEFAULT_MAX_MEMBER_SIZE;
+
+    ParallelGunzipChannel(FileChannel channel, int threads) throws IOException {
+        this(channel, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    ParallelGunzipChannel(FileChannel channel, int threads, int chunkSize) throws IOException {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (chunkSize < 1) throw new IllegalArgumentException("chunkSize must be at least 1");
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = threads * 2;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jwarc-gunzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reset();
+    }
+
+    @Override
+    public int read(ByteBuffer dest) throws IOException {
+        if (!open) throw new ClosedChannelException();
+        if (streamingMember == null && (member == null || memberPosition >= member.data.length)) {
+            member = nextMember();
+            memberPosition = 0;
+            if (member == null && streamingMember == null) return -1;
+            memberCount++;
+        }
+        if (streamingMember != null) return readStreamingMember(dest);
+        // never copy past the end of the member so the caller can observe its offset
+        int n = Math.min(dest.remaining(), member.data.length - memberPosition);
+        dest.put(member.data, memberPosition, n);
+        memberPosition += n;
+        return n;
+    }
+
+    /**
+     * Reads from a member that wasn't inflated by a worker, directly from the file.
+     */
+    private int readStreamingMember(ByteBuffer dest) throws IOException {
+        long inputBefore = streamingMember.inputPosition();
+        int n = streamingMember.read(dest);
+        if (n < 0) {
+            if (inputBefore > streamingInputStart) throw new EOFException("unexpected end of gzip stream");
+            finishStreamingMember();
+            return -1;
+        }
+        if (streamingMember.atMemberBoundary()) finishStreamingMember();
+        return n;
+    }
+
+    private void finishStreamingMember() throws IOException {
+        nextMemberOffset += streamingMember.inputPosition() - streamingInputStart;
+        streamingMember.close();
+        streamingMember = null;
+    }
+
+    /**
+     * Returns the member starting at nextMemberOffset if a worker inflated it. Otherwise starts streaming it and
+     * returns null.
+     */
+    private Member nextMember() throws IOException {
+        if (nextMemberOffset >= size) {
+            size = channel.size();
+            if (nextMemberOffset >= size) return null;
+        }
+        while (chunk == null || nextMemberOffset >= chunk.end) {
+            chunk = takeChunk();
+            memberIndex = 0;
+            if (chunk == null) break;
+        }
+        Member found = null;
+        if (chunk != null) {
+            List<Member> members = chunk.members;
+            while (memberIndex < members.size() && members.get(memberIndex).offset < nextMemberOffset) {
+                memberIndex++;
+            }
+            if (memberIndex < members.size() && members.get(memberIndex).offset == nextMemberOffset) {
+                found = members.get(memberIndex++);
+            }
+        }
+        if (found == null) {
+            // a false header, a member too large to buffer or a gap between chunks
+            streamingMember = new GunzipChannel(new PositionalChannel(channel, nextMemberOffset), newInputBuffer());
+            streamingInputStart = streamingMember.inputPosition();
+            return null;
+        }
+        nextMemberOffset = found.offset + found.length;
+        return found;
+    }
+
+    private Chunk takeChunk() throws IOException {
+        while (chunks.size() < maxChunksInFlight && nextChunkStart < size) {
+            long start = nextChunkStart;
+            long end = Math.min(start + chunkSize, size);
+            chunks.add(executor.submit(() -> inflateChunk(start, end)));
+            nextChunkStart = end;
+        }
+        Future<Chunk> future = chunks.poll();
+        if (future == null) return null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Scans [start, end) for a gzip header and inflates all members starting within that range. Members are not
+     * guaranteed to be genuine, the caller must verify they line up with the end of the previous member.
+     */
+    private Chunk inflateChunk(long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start) + 3];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) break;
+        }
+        int length = buffer.position();
+
+        for (int i = 0; i < end - start && i + 3 < length; i++) {
+            if (!GunzipChannel.looksLikeHeader(bytes, i)) continue;
+            long offset = start + i;
+            List<Member> members = new ArrayList<>();
+            try (GunzipChannel gunzip = new GunzipChannel(new PositionalChannel(channel, offset), newInputBuffer())) {
+                while (offset < end) {
+                    Member member;
+                    try {
+                        member = inflateMember(offset, gunzip, maxMemberSize);
+                    } catch (IOException e) {
+                        break;
+                    }
+                    if (member == null) break;
+                    members.add(member);
+                    offset += member.length;
+                }
+            }
+            if (!members.isEmpty()) {
+                return new Chunk(end, members);
+            }
+        }
+        return new Chunk(end, new ArrayList<>());
+    }
+
+    /**
+     * Inflates a single gzip member. Returns null at the end of the file or if the member is larger than maxSize.
+     */
+    private static Member inflateMember(long offset, GunzipChannel gunzip, int maxSize) throws IOException {
+        long inputStart = gunzip.inputPosition();
+        byte[] data = new byte[Math.min(8192, maxSize)];
+        ByteBuffer dest = ByteBuffer.wrap(data);
+        do {
+            if (!dest.hasRemaining()) {
+                if (data.length >= maxSize) return null;
+                data = Arrays.copyOf(data, (int) Math.min((long) data.length * 2, maxSize));
+                dest = ByteBuffer.wrap(data, dest.position(), data.length - dest.position());
+            }
+            if (gunzip.read(dest) < 0) {
+                if (dest.position() > 0) throw new EOFException("unexpected end of gzip stream");
+                return null;
+            }
+        } while (!gunzip.atMemberBoundary());
+        return new Member(offset, gunzip.inputPosition() - inputStart, Arrays.copyOf(data, dest.position()));
+    }
+
+    private static ByteBuffer newInputBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(65536);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns true when positioned between members.
+     */
+    boolean atMemberBoundary() {
+        return streamingMember == null && (member == null || memberPosition >= member.data.length);
+    }
+
+    @Override
+    public long inputPosition() {
+        if (streamingMember != null) return nextMemberOffset - startPosition;
+        if (member == null) return nextMemberOffset - startPosition;
+        if (memberPosition >= member.data.length) return member.offset + member.length - startPosition;
+        return member.offset - startPosition;
+    }
+
+    public long memberCount() {
+        return memberCount;
+    }
+
+    /**
+     * Discards any inflated data and restarts from the current position of the underlying channel.
+     */
+    @Override
+    public void reset() throws IOException {
+        for (Future<Chunk> future : chunks) {
+            future.cancel(false);
+        }
+        chunks.clear();
+        closeStreamingMember();
+        chunk = null;
+        member = null;
+        memberPosition = 0;
+        memberCount = 0;
+        startPosition = channel.position();
+        nextChunkStart = startPosition;
+        nextMemberOffset = startPosition;
+        size = channel.size();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        for (Future<Chunk> future : chunks) {
+            future.cancel(false);
+        }
+        chunks.clear();
+        closeStreamingMember();
+        executor.shutdown();
+        channel.close();
+    }
+
+    private void closeStreamingMember() throws IOException {
+        if (streamingMember != null) {
+            streamingMember.close();
+            streamingMember = null;
+        }
+    }
+
+    private static class Member {
+        final long offset;
+        final long length;
+        final byte[] data;
+
+        Member(long offset, long length, byte[] data) {
+            this.offset = offset;
+            this.length = length;
+            this.data = data;
+        }
+    }
+
+    private static class Chunk {
+        final long end;
+        final List<Member> members;
+
+        Chunk(long end, List<Member> members) {
+            this.end = end;
+            this.members = members;
+        }
+    }
+
+    /**
+     * Reads sequentially from a file channel using positional reads so that multiple threads can share it.
+     */
+    private static class PositionalChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private long position;
+
+        PositionalChannel(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int n = channel.read(dst, position);
+            if (n > 0) position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
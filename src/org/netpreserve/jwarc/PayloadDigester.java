@@ -0,0 +1,251 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+/**
+ * Calculates the payload digest of an HTTP response incrementally as its raw bytes arrive, so the response doesn't
+ * need to be parsed a second time after it has been received. The header is run through {@link HttpParser} and then
+ * the body is hashed according to its framing: chunked transfer encoding is decoded, a Content-Length delimits the
+ * body and otherwise the body runs until the end of the stream.
+ * <p>
+ * Like {@link ChunkedBody} in lenient mode, if the chunked framing turns out to be invalid the rest of the response
+ * is treated as the payload.
+ * <p>
+ * As the end of the message is tracked this is also used to find the boundary between responses on a persistent
+ * connection.
+ */
+class PayloadDigester {
+    private enum State {
+        HEADER, BODY, CHUNK_SIZE, CHUNK_EXTENSION, CHUNK_SIZE_LF, CHUNK_DATA, CHUNK_DATA_CR, CHUNK_DATA_LF, TRAILER,
+        TRAILER_LF, PASSTHROUGH, DONE, FAILED
+    }
+
+    private final MessageDigest digest;
+    private final boolean headRequest;
+    private final HttpParser parser = new HttpParser();
+    private final ByteArrayOutputStream framing = new ByteArrayOutputStream();
+    private State state = State.HEADER;
+    private boolean chunked;
+    private long remaining = -1;
+    private long chunkLength;
+    private int digits;
+    private int lineLength;
+    private long payloadLength;
+
+    PayloadDigester(MessageDigest digest) {
+        this(digest, false);
+    }
+
+    /**
+     * @param headRequest true if the response is to a HEAD request and so has no body
+     */
+    PayloadDigester(MessageDigest digest, boolean headRequest) {
+        this.digest = digest;
+        this.headRequest = headRequest;
+        parser.lenientResponse();
+    }
+
+    /**
+     * Feeds the next bytes of the response.
+     *
+     * @return the number of bytes that were part of the response, less than len if the message ended part way
+     */
+    int update(byte[] b, int off, int len) {
+        int start = off;
+        int end = off + len;
+        while (off < end) {
+            switch (state) {
+                case HEADER:
+                    ByteBuffer buffer = ByteBuffer.wrap(b, off, end - off);
+                    parser.parse(buffer);
+                    off = buffer.position();
+                    if (parser.isError()) {
+                        state = State.FAILED;
+                    } else if (parser.isFinished()) {
+                        startBody(parser.headers());
+                    } else {
+                        off = end;
+                    }
+                    break;
+                case BODY: {
+                    int n = remaining < 0 ? end - off : (int) Math.min(remaining, end - off);
+                    updatePayload(b, off, n);
+                    off += n;
+                    if (remaining > 0) {
+                        remaining -= n;
+                        if (remaining == 0) state = State.DONE;
+                    }
+                    break;
+                }
+                case CHUNK_DATA: {
+                    int n = (int) Math.min(remaining, end - off);
+                    updatePayload(b, off, n);
+                    off += n;
+                    remaining -= n;
+                    if (remaining == 0) state = State.CHUNK_DATA_CR;
+                    break;
+                }
+                case PASSTHROUGH:
+                    updatePayload(b, off, end - off);
+                    off = end;
+                    break;
+                case DONE:
+                case FAILED:
+                    return off - start;
+                default:
+                    parseFraming(b[off++]);
+            }
+        }
+        return len;
+    }
+
+    private void startBody(MessageHeaders headers) {
+        int status = parser.status();
+        if (status >= 100 && status < 200 && status != 101) {
+            // interim response, the real one follows
+            parser.reset();
+            return;
+        }
+        if (headRequest || status == 204 || status == 304) {
+            state = State.DONE;
+            return;
+        }
+        if (headers.contains("Transfer-Encoding", "chunked")) {
+            chunked = true;
+            state = State.CHUNK_SIZE;
+            return;
+        }
+        try {
+            remaining = headers.first("Content-Length").map(Long::parseLong).orElse(-1L);
+        } catch (NumberFormatException e) {
+            remaining = -1;
+        }
+        state = remaining == 0 ? State.DONE : State.BODY;
+    }
+
+    private void parseFraming(byte c) {
+        framing.write(c);
+        switch (state) {
+            case CHUNK_SIZE:
+                int digit = Character.digit(c, 16);
+                if (digit >= 0 && chunkLength <= Long.MAX_VALUE >> 4) {
+                    chunkLength = chunkLength * 16 + digit;
+                    digits++;
+                } else if (digits > 0 && (c == ';' || c == ' ' || c == '\t')) {
+                    state = State.CHUNK_EXTENSION;
+                } else if (digits > 0 && c == '\r') {
+                    state = State.CHUNK_SIZE_LF;
+                } else {
+                    passthrough();
+                }
+                break;
+            case CHUNK_EXTENSION:
+                if (c == '\r') {
+                    state = State.CHUNK_SIZE_LF;
+                } else if (c == '\n') {
+                    passthrough();
+                }
+                break;
+            case CHUNK_SIZE_LF:
+                if (c != '\n') {
+                    passthrough();
+                } else if (chunkLength == 0) {
+                    lineLength = 0;
+                    state = State.TRAILER;
+                } else {
+                    remaining = chunkLength;
+                    framing.reset();
+                    state = State.CHUNK_DATA;
+                }
+                break;
+            case CHUNK_DATA_CR:
+                if (c == '\r') {
+                    state = State.CHUNK_DATA_LF;
+                } else {
+                    passthrough();
+                }
+                break;
+            case CHUNK_DATA_LF:
+                if (c == '\n') {
+                    chunkLength = 0;
+                    digits = 0;
+                    state = State.CHUNK_SIZE;
+                } else {
+                    passthrough();
+                }
+                break;
+            case TRAILER:
+                if (c == '\r') {
+                    state = State.TRAILER_LF;
+                } else {
+                    lineLength++;
+                }
+                break;
+            case TRAILER_LF:
+                if (c != '\n') {
+                    passthrough();
+                } else if (lineLength == 0) {
+                    state = State.DONE;
+                } else {
+                    lineLength = 0;
+                    state = State.TRAILER;
+                }
+                break;
+            default:
+                throw new IllegalStateException(state.name());
+        }
+    }
+
+    /**
+     * Gives up on decoding the chunked encoding and treats everything from the end of the last chunk as payload.
+     */
+    private void passthrough() {
+        byte[] bytes = framing.toByteArray();
+        framing.reset();
+        state = State.PASSTHROUGH;
+        updatePayload(bytes, 0, bytes.length);
+    }
+
+    private void updatePayload(byte[] b, int off, int len) {
+        digest.update(b, off, len);
+        payloadLength += len;
+    }
+
+    /**
+     * True once the end of the payload has been reached as indicated by the Content-Length or chunked encoding.
+     */
+    boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    /**
+     * True if the response ended cleanly and the server indicated the connection may be used for another request.
+     */
+    boolean isReusable() {
+        if (state != State.DONE) return false;
+        String connection = parser.headers().first("Connection").orElse("").toLowerCase(Locale.ROOT);
+        if (connection.contains("close")) return false;
+        MessageVersion version = parser.version();
+        return version.getMajor() > 1 || (version.getMajor() == 1 && version.getMinor() >= 1)
+                || connection.contains("keep-alive");
+    }
+
+    /**
+     * Returns the payload digest or null if the response has no payload, its header could not be parsed or its
+     * chunked encoding was cut short.
+     */
+    MessageDigest digest() {
+        if (state == State.HEADER || state == State.FAILED) return null;
+        if (chunked && state != State.DONE && state != State.PASSTHROUGH) return null;
+        if (payloadLength == 0) return null;
+        return digest;
+    }
+}
@@ -10,13 +10,17 @@ package org.netpreserve.jwarc;
  */
 class RecordSource {
     private final String filename;
-    private final long offset;
+    private long offset;
 
     RecordSource(String filename, long offset) {
         this.filename = filename;
         this.offset = offset;
     }
 
+    void recycle(long offset) {
+        this.offset = offset;
+    }
+
     public long position() {
         return offset;
     }
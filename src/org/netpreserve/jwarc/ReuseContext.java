@@ -0,0 +1,122 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The objects a {@link WarcReader} recycles when record reuse is enabled. There is one record instance per record
+ * constructor and a single set of headers, body and HTTP parsing state shared between them, so everything handed out
+ * is overwritten by the next record.
+ */
+class ReuseContext {
+    private final Map<WarcRecord.Constructor<?>, WarcRecord> records = new IdentityHashMap<>();
+    private final RecordSource source;
+    private MessageHeaders headers;
+    private LengthedBody body;
+    private ReadableByteChannel bodyChannel;
+
+    private final HttpParser httpParser = new HttpParser();
+    private final ByteBuffer httpBuffer = ByteBuffer.allocate(8192);
+    private final ByteArrayOutputStream httpHeader = new ByteArrayOutputStream();
+    private final WritableByteChannel httpHeaderChannel = Channels.newChannel(httpHeader);
+    private MessageHeaders httpHeaders;
+    private ByteBuffer pushback = ByteBuffer.allocate(16384);
+
+    ReuseContext(String filename) {
+        this.source = new RecordSource(filename, 0);
+    }
+
+    MessageHeaders headers(WarcParser parser) {
+        headers = parser.headers(headers);
+        return headers;
+    }
+
+    LengthedBody body(ReadableByteChannel channel, ByteBuffer buffer, long size) {
+        if (body == null) {
+            body = LengthedBody.create(channel, buffer, size);
+            bodyChannel = body.discardPushbackOnRead();
+        } else {
+            body.recycle(size);
+        }
+        return body;
+    }
+
+    /**
+     * Returns the recycled record for the given constructor, or a new record if the constructor is not one of the
+     * builtin types and so may hold state we don't know how to clear.
+     */
+    WarcRecord record(WarcRecord.Constructor<?> constructor, boolean builtin, MessageVersion version,
+                      MessageHeaders headers, MessageBody body, long position) {
+        source.recycle(position);
+        WarcRecord record = builtin ? records.get(constructor) : null;
+        if (record == null) {
+            record = constructor.construct(version, headers, body);
+            record.recordSource = source;
+            record.reuseContext = this;
+            if (builtin) records.put(constructor, record);
+        } else {
+            record.recycle(version, headers, body);
+        }
+        return record;
+    }
+
+    HttpResponse parseResponse(LengthedBody body, boolean withoutBody) throws IOException {
+        httpParser.reset();
+        httpParser.lenientResponse();
+        ReadableByteChannel channel = channelFor(body);
+        byte[] headerBytes = parseHttpHeader(body, channel);
+        return HttpResponse.create(httpParser, httpHeaders(), headerBytes, channel, httpBuffer, false,
+                withoutBody);
+    }
+
+    HttpRequest parseRequest(LengthedBody body) throws IOException {
+        httpParser.reset();
+        httpParser.lenientRequest();
+        ReadableByteChannel channel = channelFor(body);
+        byte[] headerBytes = parseHttpHeader(body, channel);
+        return HttpRequest.create(httpParser, httpHeaders(), headerBytes, channel, httpBuffer, false);
+    }
+
+    private ReadableByteChannel channelFor(LengthedBody body) {
+        return body == this.body ? bodyChannel : body.discardPushbackOnRead();
+    }
+
+    private MessageHeaders httpHeaders() {
+        httpHeaders = httpParser.headers(httpHeaders);
+        return httpHeaders;
+    }
+
+    /**
+     * Parses the HTTP header from the body and then pushes everything read back so the record body is not invalidated.
+     */
+    private byte[] parseHttpHeader(LengthedBody body, ReadableByteChannel channel) throws IOException {
+        httpBuffer.clear();
+        httpBuffer.flip();
+        httpHeader.reset();
+        httpParser.parse(channel, httpBuffer, httpHeaderChannel);
+        byte[] headerBytes = httpHeader.toByteArray();
+        int length = headerBytes.length + httpBuffer.remaining();
+        if (pushback.capacity() < length) {
+            pushback = ByteBuffer.allocate(length);
+        }
+        pushback.clear();
+        pushback.put(headerBytes);
+        int position = httpBuffer.position();
+        pushback.put(httpBuffer);
+        httpBuffer.position(position);
+        pushback.flip();
+        body.pushback(pushback);
+        return headerBytes;
+    }
+}
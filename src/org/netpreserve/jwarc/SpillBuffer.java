@@ -0,0 +1,207 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A temporary seekable buffer which is held in memory until it grows past a threshold and is then moved to a temp
+ * file. Memory is allocated in fixed size chunks which are recycled through a small shared pool when the buffer is
+ * closed, so buffering lots of small messages creates neither files nor much garbage.
+ * <p>
+ * Not thread-safe.
+ */
+public class SpillBuffer implements SeekableByteChannel {
+    public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final BlockingQueue<byte[]> chunkPool = new ArrayBlockingQueue<>(256);
+
+    private final int threshold;
+    private final String prefix;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private FileChannel file;
+    private long size;
+    private long position;
+    private boolean open = true;
+
+    public SpillBuffer() {
+        this(DEFAULT_THRESHOLD, "jwarc");
+    }
+
+    /**
+     * @param threshold size in bytes above which the contents are moved to a temp file
+     * @param prefix    prefix for the temp file name
+     */
+    public SpillBuffer(int threshold, String prefix) {
+        this.threshold = threshold;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Whether the contents have been moved to a temp file.
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (file != null) return file.read(dst);
+        if (position >= size) return dst.hasRemaining() ? -1 : 0;
+        int n = (int) Math.min(dst.remaining(), size - position);
+        for (int remaining = n; remaining > 0; ) {
+            byte[] chunk = chunks.get((int) (position / CHUNK_SIZE));
+            int offset = (int) (position % CHUNK_SIZE);
+            int len = Math.min(remaining, CHUNK_SIZE - offset);
+            dst.put(chunk, offset, len);
+            position += len;
+            remaining -= len;
+        }
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        if (file == null && position + src.remaining() > threshold) spill();
+        if (file != null) return file.write(src);
+        int n = src.remaining();
+        if (position > size) {
+            // recycled chunks aren't zeroed so clear the gap left by seeking past the end
+            for (long p = size; p < position; ) {
+                int offset = (int) (p % CHUNK_SIZE);
+                int len = (int) Math.min(position - p, CHUNK_SIZE - offset);
+                Arrays.fill(chunk(p), offset, offset + len, (byte) 0);
+                p += len;
+            }
+        }
+        while (src.hasRemaining()) {
+            int offset = (int) (position % CHUNK_SIZE);
+            int len = Math.min(src.remaining(), CHUNK_SIZE - offset);
+            src.get(chunk(position), offset, len);
+            position += len;
+        }
+        size = Math.max(size, position);
+        return n;
+    }
+
+    private byte[] chunk(long position) {
+        int index = (int) (position / CHUNK_SIZE);
+        while (chunks.size() <= index) chunks.add(allocateChunk());
+        return chunks.get(index);
+    }
+
+    /**
+     * Moves the contents to a temp file. The file is deleted when this buffer is closed.
+     */
+    private void spill() throws IOException {
+        Path path = Files.createTempFile(prefix, ".tmp");
+        file = FileChannel.open(path, READ, WRITE, DELETE_ON_CLOSE, TRUNCATE_EXISTING);
+        for (long written = 0; written < size; ) {
+            int len = (int) Math.min(CHUNK_SIZE, size - written);
+            ByteBuffer buffer = ByteBuffer.wrap(chunks.get((int) (written / CHUNK_SIZE)), 0, len);
+            while (buffer.hasRemaining()) {
+                file.write(buffer);
+            }
+            written += len;
+        }
+        file.position(position);
+        releaseChunks();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return file != null ? file.position() : position;
+    }
+
+    @Override
+    public SpillBuffer position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) throw new IllegalArgumentException("negative position");
+        if (file != null) {
+            file.position(newPosition);
+        } else {
+            position = newPosition;
+        }
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return file != null ? file.size() : size;
+    }
+
+    @Override
+    public SpillBuffer truncate(long newSize) throws IOException {
+        ensureOpen();
+        if (newSize < 0) throw new IllegalArgumentException("negative size");
+        if (file != null) {
+            file.truncate(newSize);
+        } else {
+            if (newSize < size) {
+                size = newSize;
+                int keep = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+                while (chunks.size() > keep) {
+                    recycle(chunks.remove(chunks.size() - 1));
+                }
+            }
+            position = Math.min(position, newSize);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Returns the memory to the pool and deletes the temp file if there was one.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) return;
+        open = false;
+        releaseChunks();
+        if (file != null) file.close();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) throw new ClosedChannelException();
+    }
+
+    private void releaseChunks() {
+        for (byte[] chunk : chunks) {
+            recycle(chunk);
+        }
+        chunks.clear();
+    }
+
+    private static byte[] allocateChunk() {
+        byte[] chunk = chunkPool.poll();
+        return chunk != null ? chunk : new byte[CHUNK_SIZE];
+    }
+
+    private static void recycle(byte[] chunk) {
+        chunkPool.offer(chunk);
+    }
+}
@@ -11,6 +11,7 @@ import java.net.InetAddress;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,10 +21,18 @@ import static java.util.stream.Collectors.toList;
  * A type of WARC record created as part of a web capture event.
  */
 public abstract class WarcCaptureRecord extends WarcTargetRecord {
+    private List<URI> concurrentTo;
+
     WarcCaptureRecord(MessageVersion version, MessageHeaders headers, MessageBody body) {
         super(version, headers, body);
     }
 
+    @Override
+    void recycle(MessageVersion version, MessageHeaders headers, MessageBody body) {
+        super.recycle(version, headers, body);
+        concurrentTo = null;
+    }
+
     /**
      * The IP address of the server involved in the capture event this record belongs to.
      */
@@ -35,7 +44,11 @@ public abstract class WarcCaptureRecord extends WarcTargetRecord {
      * The IDs of other records created during the same capture event as this one.
      */
     public List<URI> concurrentTo() {
-        return headers().all("WARC-Concurrent-To").stream().map(WarcRecord::parseRecordID).collect(toList());
+        if (concurrentTo == null) {
+            concurrentTo = Collections.unmodifiableList(headers().all("WARC-Concurrent-To").stream()
+                    .map(WarcRecord::parseRecordID).collect(toList()));
+        }
+        return concurrentTo;
     }
 
     /**
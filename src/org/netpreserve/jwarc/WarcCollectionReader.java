@@ -0,0 +1,310 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Reads the records of a list of WARC files in order.
+ * <p>
+ * A background thread reads the raw (possibly compressed) bytes of the files sequentially into a small pool of
+ * buffers ahead of the consumer, continuing straight on to the next file once the current one has been read. Disk reads
+ * therefore overlap with decompression and parsing. As the files are read as a stream, the readers returned by
+ * {@link #nextReader()} are not seekable.
+ */
+public class WarcCollectionReader implements Iterable<WarcRecord>, Closeable {
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int BUFFERS = 2;
+
+    private final List<Path> paths;
+    private final BlockingQueue<Chunk> filled = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ByteBuffer> empty = new ArrayBlockingQueue<>(BUFFERS);
+    private final Thread ioThread;
+    private volatile int wantedFile;
+    private volatile boolean closed;
+    private int fileIndex = -1;
+    private WarcReader reader;
+    private boolean lenient;
+    private Consumer<String> warningHandler;
+
+    public WarcCollectionReader(List<Path> paths) {
+        this(paths, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param paths      the WARC files to read
+     * @param bufferSize size of each of the two read-ahead buffers
+     */
+    public WarcCollectionReader(List<Path> paths, int bufferSize) {
+        this.paths = new ArrayList<>(paths);
+        for (int i = 0; i < BUFFERS; i++) {
+            empty.add(ByteBuffer.allocate(bufferSize));
+        }
+        ioThread = new Thread(this::readFiles, "jwarc-read-ahead");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Runs on the I/O thread reading each file into buffers as they become free.
+     */
+    private void readFiles() {
+        try {
+            for (int i = 0; i < paths.size() && !closed; i++) {
+                if (i < wantedFile) continue;
+                ByteBuffer buffer = null;
+                try (FileChannel channel = FileChannel.open(paths.get(i))) {
+                    while (!closed && i >= wantedFile) {
+                        buffer = empty.take();
+                        buffer.clear();
+                        int n = 0;
+                        while (buffer.hasRemaining() && (n = channel.read(buffer)) >= 0) {
+                            // fill the buffer
+                        }
+                        buffer.flip();
+                        if (buffer.hasRemaining()) {
+                            filled.put(new Chunk(i, buffer, null));
+                        } else {
+                            empty.put(buffer);
+                        }
+                        buffer = null;
+                        if (n < 0) break;
+                    }
+                } catch (IOException e) {
+                    // return the buffer we were filling to the pool or we'll eventually run out
+                    if (buffer != null) empty.put(buffer);
+                    filled.put(new Chunk(i, null, e));
+                    continue;
+                }
+                filled.put(new Chunk(i, null, null));
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Closes the reader for the current file and returns a reader for the next one.
+     *
+     * @return a reader or an empty <code>Optional</code> if there are no more files
+     * @throws IOException if the next file could not be opened or read
+     */
+    public Optional<WarcReader> nextReader() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        if (closed) throw new ClosedChannelException();
+        if (fileIndex + 1 >= paths.size()) {
+            fileIndex = paths.size();
+            return Optional.empty();
+        }
+        fileIndex++;
+        wantedFile = fileIndex;
+        WarcReader reader = new WarcReader(new FileView(fileIndex));
+        reader.filename = paths.get(fileIndex).getFileName().toString();
+        reader.setLenient(lenient);
+        if (warningHandler != null) reader.onWarning(warningHandler);
+        this.reader = reader;
+        return Optional.of(reader);
+    }
+
+    /**
+     * Reads the next record, moving on to the next file at the end of each file.
+     *
+     * @return a record or an empty <code>Optional</code> once all the files have been read
+     */
+    public Optional<WarcRecord> next() throws IOException {
+        while (true) {
+            if (reader != null) {
+                WarcRecord record = reader.nextRecord();
+                if (record != null) return Optional.of(record);
+            }
+            if (!nextReader().isPresent()) return Optional.empty();
+        }
+    }
+
+    /**
+     * The file containing the most recently read record.
+     */
+    public Path path() {
+        if (fileIndex < 0 || fileIndex >= paths.size()) throw new IllegalStateException("no current file");
+        return paths.get(fileIndex);
+    }
+
+    /**
+     * The byte position of the most recently read record within its file.
+     */
+    public long position() {
+        if (reader == null) throw new IllegalStateException("no current file");
+        return reader.position();
+    }
+
+    /**
+     * Registers a handler that will be called when the reader encounters an error it was able to recover from.
+     *
+     * @see WarcReader#onWarning(Consumer)
+     */
+    public void onWarning(Consumer<String> warningHandler) {
+        this.warningHandler = warningHandler;
+        if (reader != null) reader.onWarning(warningHandler);
+    }
+
+    /**
+     * Sets the lenient mode for the readers of each file.
+     *
+     * @see WarcReader#setLenient(boolean)
+     */
+    public void setLenient(boolean lenient) {
+        this.lenient = lenient;
+        if (reader != null) reader.setLenient(lenient);
+    }
+
+    /**
+     * Returns an iterator over the records in all the files.
+     */
+    @Override
+    public Iterator<WarcRecord> iterator() {
+        return new Iterator<WarcRecord>() {
+            WarcRecord next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = WarcCollectionReader.this.next().orElse(null);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public WarcRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                WarcRecord temp = next;
+                next = null;
+                return temp;
+            }
+        };
+    }
+
+    /**
+     * Returns a Stream over the records in all the files.
+     */
+    public Stream<WarcRecord> records() {
+        return StreamSupport.stream(spliteratorUnknownSize(iterator(), ORDERED | NONNULL), false);
+    }
+
+    /**
+     * Stops the read-ahead thread and closes the current file.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        ioThread.interrupt();
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    private static class Chunk {
+        final int file;
+        final ByteBuffer buffer;
+        final IOException error;
+
+        Chunk(int file, ByteBuffer buffer, IOException error) {
+            this.file = file;
+            this.buffer = buffer;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The consumer's view of one file, reading from the buffers filled by the I/O thread.
+     */
+    private class FileView implements ReadableByteChannel {
+        private final int file;
+        private ByteBuffer current;
+        private boolean eof;
+        private boolean open = true;
+
+        FileView(int file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) throw new ClosedChannelException();
+            while (current == null || !current.hasRemaining()) {
+                recycle();
+                if (eof) return -1;
+                Chunk chunk;
+                try {
+                    chunk = filled.take();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                if (chunk.file < file) {
+                    // leftovers from a file which was abandoned before its end
+                    if (chunk.buffer != null) empty.add(chunk.buffer);
+                    continue;
+                }
+                if (chunk.error != null) {
+                    eof = true;
+                    throw chunk.error;
+                }
+                if (chunk.buffer == null) {
+                    eof = true;
+                    return -1;
+                }
+                current = chunk.buffer;
+            }
+            return IOUtils.transfer(current, dst);
+        }
+
+        private void recycle() {
+            if (current != null) {
+                empty.add(current);
+                current = null;
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+            recycle();
+        }
+    }
+}
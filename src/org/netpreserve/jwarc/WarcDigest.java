@@ -40,8 +40,10 @@ public class WarcDigest {
         raw = algorithm + ":" + value;
     }
 
-    private static String canonicalizeAlgorithm(String algorithm) {
-        return algorithm.replace("-", "").toLowerCase(Locale.US);
+    static String canonicalizeAlgorithm(String algorithm) {
+        String canonical = algorithm.replace("-", "").toLowerCase(Locale.US);
+        if (canonical.equals("blake3256")) return "blake3";
+        return canonical;
     }
 
     private void parse() {
@@ -236,8 +238,17 @@ public class WarcDigest {
     /**
      * Get digester for algorithm names not matching the canonical Java names, e.g.
      * "sha256" instead of "SHA-256"
+     * <p>
+     * The non-cryptographic "xxh64" is built in. "blake3" is available if a security provider such as BouncyCastle
+     * supplies "BLAKE3-256".
      */
     public static MessageDigest getDigester(String algorithm) throws NoSuchAlgorithmException {
+        String canonical = canonicalizeAlgorithm(algorithm);
+        if (canonical.equals("xxh64")) {
+            return new XxHash64();
+        } else if (canonical.equals("blake3")) {
+            return MessageDigest.getInstance("BLAKE3-256");
+        }
         try {
             return MessageDigest.getInstance(algorithm);
         } catch (NoSuchAlgorithmException e) {
@@ -20,6 +20,12 @@ public class WarcMetadata extends WarcCaptureRecord {
         super(version, headers, body);
     }
 
+    @Override
+    void recycle(MessageVersion version, MessageHeaders headers, MessageBody body) {
+        super.recycle(version, headers, body);
+        fields = null;
+    }
+
     /**
      * Metadata records do not have a payload so this method always returns empty.
      */
@@ -37,13 +37,12 @@ action fold {
 }
 
 action handle_name  {
-    name = new String(buf, 0, bufPos, US_ASCII);
+    headerFields.name(buf, 0, bufPos);
     bufPos = 0;
 }
 
 action handle_value {
-    String value = new String(buf, 0, endOfText, UTF_8);
-    headerMap.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+    headerFields.value(buf, 0, endOfText);
     bufPos = 0;
     endOfText = 0;
 }
@@ -209,9 +208,8 @@ public class WarcParser extends MessageParser {
     private int endOfText;
     private int major;
     private int minor;
-    private String name;
     private String protocol = "WARC";
-    private Map<String,List<String>> headerMap;
+    private final HeaderFields headerFields = new HeaderFields(UTF_8);
     private static final DateTimeFormatter arcTimeFormat = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 
     public static WarcParser newWarcFieldsParser() {
@@ -234,8 +232,7 @@ public class WarcParser extends MessageParser {
         endOfText = 0;
         major = 0;
         minor = 0;
-        name = null;
-        headerMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headerFields.clear();
         if (buf.length > 4096) {
             buf = new byte[4096];
         }
@@ -314,7 +311,14 @@ public class WarcParser extends MessageParser {
     }
 
     public MessageHeaders headers() {
-        return new MessageHeaders(headerMap);
+        return headerFields.toHeaders();
+    }
+
+    /**
+     * Returns the parsed headers, overwriting the given instance previously returned by this method if non-null.
+     */
+    MessageHeaders headers(MessageHeaders recycled) {
+        return headerFields.toHeaders(recycled);
     }
 
     public MessageVersion version() {
@@ -326,9 +330,7 @@ public class WarcParser extends MessageParser {
     }
 
     private void setHeader(String name, String value) {
-        List<String> list = new ArrayList<>();
-        list.add(value);
-        headerMap.put(name, list);
+        headerFields.set(name, value);
     }
 
     %% write data;
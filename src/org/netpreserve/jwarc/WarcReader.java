@@ -14,7 +14,6 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.function.Consumer;
@@ -27,7 +26,7 @@ import static java.util.Spliterators.spliteratorUnknownSize;
 
 public class WarcReader implements Iterable<WarcRecord>, Closeable {
     private static final int CRLFCRLF = 0x0d0a0d0a;
-    private static final Map<String, WarcRecord.Constructor> defaultTypes = initDefaultTypes();
+    static final Map<String, WarcRecord.Constructor> defaultTypes = initDefaultTypes();
     private final HashMap<String, WarcRecord.Constructor> types;
     private final WarcParser parser = new WarcParser();
     private final ReadableByteChannel channel;
@@ -39,25 +38,34 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
     private long position;
     private long headerLength;
     private boolean blockDigestCalculation = false;
+    private List<String> additionalBlockDigests = Collections.emptyList();
     private Consumer<String> warningHandler;
-    private String filename;
+    String filename;
+    private Path path;
+    private boolean lenient;
     private long misalignedRecords;
+    long endPosition = Long.MAX_VALUE;
+    private ReuseContext reuseContext;
 
     /**
      * Create WarcReader with user-provided buffer. Data contained in the buffer is
      * used as initial input before reading from the input channel. The buffer must
-     * be ready for reading ({@link ByteBuffer#flip()} called).
+     * be ready for reading ({@link ByteBuffer#flip()} called). Both heap and direct
+     * buffers are supported.
      * 
      * @param channel read WARC data from
      * @param buffer  buffer to read initial data from, later used to buffer data
      *                from channel. Will be changed to little endian.
      * @throws IOException
-     * @throws IllegalArgumentException if buffer is not readable or is not backed
-     *                                  by an array
+     * @throws IllegalArgumentException if buffer is read-only
      */
     public WarcReader(ReadableByteChannel channel, ByteBuffer buffer) throws IOException, IllegalArgumentException {
-        if (!buffer.hasArray()) {
-            throw new IllegalArgumentException("ByteBuffer must be array-backed and writable");
+        this(channel, buffer, 1);
+    }
+
+    private WarcReader(ReadableByteChannel channel, ByteBuffer buffer, int threads) throws IOException {
+        if (buffer.isReadOnly()) {
+            throw new IllegalArgumentException("ByteBuffer must be writable");
         }
         this.types = new HashMap<>(defaultTypes);
         startPosition = tryPosition(channel);
@@ -83,8 +91,13 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
         ByteBuffer leBuffer = buffer.asReadOnlyBuffer();
         leBuffer.order(ByteOrder.LITTLE_ENDIAN);
         if (leBuffer.getShort(buffer.position()) == (short) 0x8b1f) {
-            this.channel = new GunzipChannel(channel, buffer);
-            this.buffer = ByteBuffer.allocate(8192);
+            if (threads > 1 && channel instanceof FileChannel) {
+                ((FileChannel) channel).position(startPosition);
+                this.channel = new ParallelGunzipChannel((FileChannel) channel, threads);
+            } else {
+                this.channel = new GunzipChannel(channel, buffer);
+            }
+            this.buffer = buffer.isDirect() ? ByteBuffer.allocateDirect(8192) : ByteBuffer.allocate(8192);
             this.buffer.flip();
             compression = WarcCompression.GZIP;
         } else if (leBuffer.getInt(buffer.position()) == 0xfd2fb528 ||
@@ -99,12 +112,12 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
                      NoSuchMethodException e) {
                 throw new IOException(e);
             }
-            this.buffer = ByteBuffer.allocate(8192);
+            this.buffer = buffer.isDirect() ? ByteBuffer.allocateDirect(8192) : ByteBuffer.allocate(8192);
             this.buffer.flip();
             compression = WarcCompression.ZSTD;
 
             // update position in case we read a dictionary frame
-            position = ((DecompressingChannel) this.channel).inputPosition();
+            position = startPosition + ((DecompressingChannel) this.channel).inputPosition();
         } else {
             this.channel = channel;
             this.buffer = buffer;
@@ -115,6 +128,21 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
     }
 
 
+    /**
+     * Applies the settings of another reader to this one. Used to configure readers opened for other parts of the
+     * same file.
+     */
+    void copySettingsFrom(WarcReader other) {
+        types.clear();
+        types.putAll(other.types);
+        blockDigestCalculation = other.blockDigestCalculation;
+        additionalBlockDigests = other.additionalBlockDigests;
+        filename = other.filename;
+        if (other.warningHandler != null) onWarning(other.warningHandler);
+        setLenient(other.lenient);
+        setReuseRecords(other.reuseContext != null);
+    }
+
     static long tryPosition(ReadableByteChannel channel) {
         if (channel instanceof SeekableByteChannel) {
             try {
@@ -137,6 +165,143 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
     public WarcReader(Path path) throws IOException {
         this(FileChannel.open(path));
         this.filename = path.getFileName().toString();
+        this.path = path;
+    }
+
+    /**
+     * Opens a WARC file for reading using memory-mapping instead of read system calls.
+     * <p>
+     * The file is mapped in large windows. For uncompressed files each record body is a read-only view of the
+     * mapping rather than a copy, which can be accessed directly with {@link MessageBody#asByteBuffer()}. The views
+     * remain valid after the reader is closed but must not be accessed if the file is truncated.
+     *
+     * @param path the path to the file
+     * @throws IOException if an I/O error occurs
+     */
+    public static WarcReader mapped(Path path) throws IOException {
+        WarcReader reader = new WarcReader(new MappedChannel(FileChannel.open(path)));
+        reader.filename = path.getFileName().toString();
+        reader.path = path;
+        return reader;
+    }
+
+    /**
+     * Opens a WARC file for reading, decompressing it on multiple threads.
+     * <p>
+     * When the file is gzip compressed record-at-a-time, gzip members are located and inflated on a pool of worker
+     * threads ahead of the consumer. Records are still returned in file order with the same positions as a
+     * single-threaded reader. Other files are read normally.
+     *
+     * @param path    the path to the file
+     * @param threads number of decompression threads
+     * @throws IOException if an I/O error occurs
+     */
+    public WarcReader(Path path, int threads) throws IOException {
+        this(FileChannel.open(path), (ByteBuffer) ByteBuffer.allocate(8192).flip(), threads);
+        this.filename = path.getFileName().toString();
+        this.path = path;
+    }
+
+    /**
+     * Opens a reader over the records that begin within a byte range of a WARC file.
+     * <p>
+     * Intended for splitting a single large WARC file between workers without an index. The start of the range need
+     * not be a record boundary: the channel is scanned forward to the next gzip member or zstd frame (for compressed
+     * files) or <code>WARC/</code> line (for uncompressed files) which parses as a WARC record header. The reader then
+     * yields each record whose first byte lies in <code>[start, end)</code>, reading past <code>end</code> to finish
+     * the last one. Adjacent ranges therefore yield every record in the file exactly once.
+     * <p>
+     * As verification only parses the record header, content that happens to embed a complete WARC record (such as an
+     * uncompressed WARC file stored as a resource record) may be mistaken for a record boundary.
+     *
+     * @param channel seekable channel to read from, closed when the returned reader is closed
+     * @param start   byte offset to begin scanning for a record from
+     * @param end     byte offset at which to stop yielding records
+     * @return a reader positioned at the first record in the range
+     * @throws IOException if an I/O error occurs
+     */
+    public static WarcReader forRange(SeekableByteChannel channel, long start, long end) throws IOException {
+        if (start < 0 || end < start) throw new IllegalArgumentException("invalid range " + start + "-" + end);
+        long recordStart = findRecordStart(channel, detectCompression(channel), start, end);
+        // if there are no records in range, return a reader positioned at the end of the channel
+        channel.position(recordStart < 0 ? channel.size() : recordStart);
+        WarcReader reader = new WarcReader(channel);
+        reader.endPosition = end;
+        return reader;
+    }
+
+    /**
+     * Returns the offset of the first record which begins within [start, end) or -1 if there is none.
+     */
+    static long findRecordStart(SeekableByteChannel channel, WarcCompression compression, long start, long end)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        SeekableByteChannel probeChannel = new UnclosableChannel(channel);
+        for (long candidate = start == 0 ? 0 : findRecordCandidate(channel, compression, start, end, buffer);
+             candidate >= 0 && candidate < end;
+             candidate = findRecordCandidate(channel, compression, candidate + 1, end, buffer)) {
+            channel.position(candidate);
+            // closing the probe releases its decompressor but leaves the channel open
+            try (WarcReader reader = new WarcReader(probeChannel)) {
+                Optional<WarcRecord> record = reader.next();
+                if (record.isPresent() && record.get().version().getProtocol().equals("WARC")
+                    && record.get().headers().first("WARC-Record-ID").isPresent()) {
+                    return candidate;
+                }
+            } catch (IOException e) {
+                // not a record boundary, keep scanning
+            }
+        }
+        return -1;
+    }
+
+    private static WarcCompression detectCompression(SeekableByteChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(0);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic) < 0) return WarcCompression.NONE;
+        }
+        magic.flip();
+        if (magic.getShort(0) == (short) 0x8b1f) {
+            return WarcCompression.GZIP;
+        } else if (magic.getInt(0) == 0xfd2fb528 || magic.getInt(0) == 0x184D2A5D) {
+            return WarcCompression.ZSTD;
+        }
+        return WarcCompression.NONE;
+    }
+
+    /**
+     * Returns the offset of the first byte sequence in [from, end) that could begin a record or -1 if there is none.
+     */
+    private static long findRecordCandidate(SeekableByteChannel channel, WarcCompression compression, long from,
+                                            long end, ByteBuffer buffer) throws IOException {
+        // for uncompressed files we also need the preceding byte to check we're at the start of a line
+        long blockStart = compression == WarcCompression.NONE ? from - 1 : from;
+        final int overlap = 5;
+        while (blockStart < end) {
+            channel.position(Math.max(0, blockStart));
+            buffer.clear();
+            if (blockStart < 0) buffer.put((byte) '\n');
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            byte[] bytes = buffer.array();
+            int length = buffer.position();
+            for (int i = 0; i + overlap < length && blockStart + i < end; i++) {
+                if (compression == WarcCompression.GZIP) {
+                    if (GunzipChannel.looksLikeHeader(bytes, i)) return blockStart + i;
+                } else if (compression == WarcCompression.ZSTD) {
+                    if (bytes[i] == 0x28 && bytes[i + 1] == (byte) 0xb5 && bytes[i + 2] == 0x2f &&
+                        bytes[i + 3] == (byte) 0xfd) return blockStart + i;
+                } else if (bytes[i] == '\n' && bytes[i + 1] == 'W' && bytes[i + 2] == 'A' && bytes[i + 3] == 'R' &&
+                           bytes[i + 4] == 'C' && bytes[i + 5] == '/') {
+                    return blockStart + i + 1;
+                }
+            }
+            if (length <= overlap) break;
+            blockStart += length - overlap;
+        }
+        return -1;
     }
 
     private static Map<String, WarcRecord.Constructor> initDefaultTypes() {
@@ -167,6 +332,17 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
      * @throws ParsingException if the WARC record is invalid.
      */
     public Optional<WarcRecord> next() throws IOException {
+        return Optional.ofNullable(nextRecord());
+    }
+
+    WarcRecord nextRecord() throws IOException {
+        return nextRecord(endPosition);
+    }
+
+    /**
+     * Reads the next record unless it starts at or after the given limit.
+     */
+    WarcRecord nextRecord(long limit) throws IOException {
         if (record != null) {
             record.body().consume();
             record.body().close();
@@ -177,16 +353,23 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
             } else {
                 position += headerLength + record.body().size() + trailerLength;
             }
+            record = null;
+        }
+
+        if (position >= Math.min(limit, endPosition)) {
+            return null;
         }
 
         parser.reset();
         boolean atGzipBoundary = true;
         if (channel instanceof GunzipChannel) {
             atGzipBoundary = !buffer.hasRemaining() && ((GunzipChannel) channel).atMemberBoundary();
+        } else if (channel instanceof ParallelGunzipChannel) {
+            atGzipBoundary = !buffer.hasRemaining() && ((ParallelGunzipChannel) channel).atMemberBoundary();
         }
         try {
             if (!parser.parse(channel, buffer)) {
-                return Optional.empty();
+                return null;
             }
         } catch (ParsingException e) {
             e.recordSource = new RecordSource(filename, position);
@@ -196,30 +379,65 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
             misalignedRecords++;
         }
         headerLength = parser.position();
-        MessageHeaders headers = parser.headers();
+        MessageHeaders headers = reuseContext == null ? parser.headers() : reuseContext.headers(parser);
         long contentLength = headers.sole("Content-Length").map(Long::parseLong).orElse(0L);
-        MessageBody body = LengthedBody.create(channel, buffer, contentLength);
+        MessageBody body = null;
+        if (channel instanceof MappedChannel) {
+            body = mappedBody((MappedChannel) channel, contentLength);
+        }
+        if (body == null && reuseContext != null) {
+            body = reuseContext.body(channel, buffer, contentLength);
+        } else if (body == null) {
+            body = LengthedBody.create(channel, buffer, contentLength);
+        }
         if (blockDigestCalculation) {
             Optional<String> blockDigestHeader = headers.sole("WARC-Block-Digest");
+            List<String> algorithms = new ArrayList<>();
             if (blockDigestHeader.isPresent()) {
                 try {
-                    MessageDigest md = (new WarcDigest(blockDigestHeader.get())).getDigester();
-                    body = new DigestingMessageBody(body, md);
+                    String algorithm = new WarcDigest(blockDigestHeader.get()).algorithm();
+                    WarcDigest.getDigester(algorithm);
+                    algorithms.add(algorithm);
                 } catch (NoSuchAlgorithmException e) {
                     // ignore in order to be able to read also WARC records with unknown digest algorithm
                     //throw new IOException("Failed to calculate block digest", e);
                 }
             }
+            algorithms.addAll(additionalBlockDigests);
+            if (!algorithms.isEmpty()) {
+                try {
+                    body = new DigestingMessageBody(body, new MultiDigest(algorithms));
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e); // already checked
+                }
+            }
         }
         record = construct(parser.version(), headers, body);
-        return Optional.of(record);
+        return record;
+    }
+
+    /**
+     * Creates a body which is a slice of the memory-mapped file instead of a copy, and skips over it.
+     */
+    private MessageBody mappedBody(MappedChannel mappedChannel, long contentLength) throws IOException {
+        long bodyStart = position + headerLength;
+        ByteBuffer slice = mappedChannel.slice(bodyStart, contentLength);
+        if (slice == null || slice.remaining() < contentLength) return null;
+        buffer.position(buffer.limit());
+        mappedChannel.position(bodyStart + contentLength);
+        return LengthedBody.create(slice);
     }
 
     private WarcRecord construct(MessageVersion version, MessageHeaders headers, MessageBody body) {
         String type = headers.sole("WARC-Type").orElse("default");
         WarcRecord.Constructor constructor = types.get(type);
         if (constructor == null) {
-            constructor = types.get("default");
+            type = "default";
+            constructor = types.get(type);
+        }
+        if (reuseContext != null) {
+            return reuseContext.record(constructor, constructor == defaultTypes.get(type), version, headers, body,
+                    position);
         }
         WarcRecord record = constructor.construct(version, headers, body);
         record.recordSource = new RecordSource(filename, position);
@@ -307,6 +525,36 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
         blockDigestCalculation  = true;
     }
 
+    /**
+     * Like {@link #calculateBlockDigest()} but also calculates digests with the given algorithms for every record
+     * in the same pass over the body, regardless of its "WARC-Block-Digest" header. These can be retrieved with
+     * {@link WarcRecord#calculatedBlockDigests()}.
+     *
+     * @throws NoSuchAlgorithmException if any of the algorithms is unsupported
+     */
+    public void calculateBlockDigest(String... additionalAlgorithms) throws NoSuchAlgorithmException {
+        new MultiDigest(additionalAlgorithms); // fail fast on unknown algorithms
+        this.additionalBlockDigests = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(additionalAlgorithms)));
+        blockDigestCalculation = true;
+    }
+
+    /**
+     * Enables or disables reuse of record objects.
+     * <p>
+     * When enabled {@link #next()} recycles a single record instance per record type along with its headers, body and
+     * the state used to parse captured HTTP messages, so that iterating over a file creates very little garbage. The
+     * catch is that a record, and anything obtained from it such as its headers, body or {@link WarcResponse#http()}
+     * message, is only valid until the next call to {@link #next()} or {@link #position(long)}. Callers must copy out
+     * anything they need to keep. Records of types registered with
+     * {@link #registerType(String, WarcRecord.Constructor)} are still constructed fresh but share the recycled
+     * headers and body.
+     * <p>
+     * Block digest calculation and memory-mapped reading still allocate a new body per record.
+     */
+    public void setReuseRecords(boolean reuseRecords) {
+        reuseContext = reuseRecords ? new ReuseContext(filename) : null;
+    }
+
     /**
      * Returns the byte position of the most recently read record.
      * <p>
@@ -379,7 +627,7 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
             public boolean hasNext() {
                 if (next == null) {
                     try {
-                        next = WarcReader.this.next().orElse(null);
+                        next = nextRecord();
                     } catch (IOException e) {
                         throw new UncheckedIOException(e);
                     }
@@ -401,11 +649,31 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
 
     /**
      * Returns a Stream over the records in the WARC file.
+     * <p>
+     * When the reader was opened from a {@link Path} the stream can be split for parallel processing. Each split opens
+     * its own channel and reader over a byte range of the file, starting at a record boundary found in the same way as
+     * {@link #forRange(SeekableByteChannel, long, long)}, and inherits this reader's settings. Gzip compressed files
+     * must be compressed record-at-a-time to be split. Closing the stream closes any readers opened for splits.
      */
     public Stream<WarcRecord> records() {
+        if (path != null && underlyingChannel instanceof SeekableByteChannel) {
+            return WarcRecordSpliterator.stream(this, path);
+        }
         return StreamSupport.stream(spliteratorUnknownSize(iterator(), ORDERED | NONNULL), false);
     }
 
+    /**
+     * Returns a Stream over the records of multiple WARC files in order.
+     * <p>
+     * In a parallel stream the list of files is divided between workers and large files are further split by byte
+     * range as described in {@link #records()}. Closing the stream closes any files which remain open.
+     *
+     * @param paths the WARC files to read
+     */
+    public static Stream<WarcRecord> records(List<Path> paths) throws IOException {
+        return WarcRecordSpliterator.stream(paths);
+    }
+
     private void emitWarning(String message) {
         if (warningHandler != null) {
             warningHandler.accept(message);
@@ -432,6 +700,7 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
      * </ul>
      */
     public void setLenient(boolean lenient) {
+        this.lenient = lenient;
         parser.setLenient(lenient);
     }
 
@@ -442,4 +711,56 @@ public class WarcReader implements Iterable<WarcRecord>, Closeable {
     public void close() throws IOException {
         channel.close();
     }
+
+    /**
+     * Passes everything but close() through to a channel.
+     */
+    private static class UnclosableChannel implements SeekableByteChannel {
+        private final SeekableByteChannel channel;
+
+        UnclosableChannel(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
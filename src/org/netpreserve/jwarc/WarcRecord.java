@@ -7,6 +7,8 @@ package org.netpreserve.jwarc;
 
 import java.net.URI;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,11 +18,21 @@ import java.io.IOException;
 
 public class WarcRecord extends Message {
     RecordSource recordSource;
+    ReuseContext reuseContext;
+    private URI id;
+    private Instant date;
 
     WarcRecord(MessageVersion version, MessageHeaders headers, MessageBody body) {
         super(version, headers, body);
     }
 
+    @Override
+    void recycle(MessageVersion version, MessageHeaders headers, MessageBody body) {
+        super.recycle(version, headers, body);
+        id = null;
+        date = null;
+    }
+
     static URI parseRecordID(String uri) {
         if (uri.startsWith("<") && uri.endsWith(">")) {
             uri = uri.substring(1, uri.length() - 1);
@@ -47,14 +59,20 @@ public class WarcRecord extends Message {
      * The globally unique identifier for this record.
      */
     public URI id() {
-        return parseRecordID(headers().sole("WARC-Record-ID").get());
+        if (id == null) {
+            id = parseRecordID(headers().sole("WARC-Record-ID").get());
+        }
+        return id;
     }
 
     /**
      * The instant that data capture for this record began.
      */
     public Instant date() {
-        return Instant.parse(headers().sole("WARC-Date").get());
+        if (date == null) {
+            date = Instant.parse(headers().sole("WARC-Date").get());
+        }
+        return date;
     }
 
     /**
@@ -93,11 +111,27 @@ public class WarcRecord extends Message {
      * should be called after the record block or payload has been processed.
      */
     public Optional<WarcDigest> calculatedBlockDigest() throws IOException {
+        Optional<WarcDigest> blockDigest = blockDigest();
+        if (!blockDigest.isPresent()) return Optional.empty();
+        List<WarcDigest> digests = calculatedBlockDigests();
+        if (digests.isEmpty() || !digests.get(0).algorithm().equals(blockDigest.get().algorithm())) {
+            return Optional.empty();
+        }
+        return Optional.of(digests.get(0));
+    }
+
+    /**
+     * All digests created while reading the WARC record body: the one for the "WARC-Block-Digest" header followed by
+     * any additional algorithms, see {@link WarcReader#calculateBlockDigest(String...)}.
+     * <p>
+     * Note: Calling this method will consume the record body exhaustively.
+     */
+    public List<WarcDigest> calculatedBlockDigests() throws IOException {
         if (body() instanceof DigestingMessageBody) {
             body().consume();
-            return Optional.of(new WarcDigest(((DigestingMessageBody) body()).getDigest()));
+            return ((DigestingMessageBody) body()).getDigest().digests();
         }
-        return Optional.empty();
+        return Collections.emptyList();
     }
 
     /**
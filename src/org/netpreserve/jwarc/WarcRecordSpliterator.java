@@ -0,0 +1,230 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A spliterator over the records of a WARC file which splits by byte range.
+ * <p>
+ * A split looks for the first record starting after the midpoint of the remaining range. The reader this spliterator
+ * was using is handed to the prefix, which stops at the record found, and a new reader is opened from there for the
+ * suffix. The limit is kept in the spliterator rather than the reader so that a caller's reader can carry on past it
+ * if the stream is abandoned early. The size estimate is in bytes rather than records.
+ */
+class WarcRecordSpliterator implements Spliterator<WarcRecord> {
+    static final long MIN_SPLIT_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final long fileSize;
+    private final Queue<WarcReader> openedReaders;
+    private WarcReader reader;
+    private boolean ownsReader;
+    private long limit;
+
+    private WarcRecordSpliterator(Path path, long fileSize, WarcReader reader, boolean ownsReader, long limit,
+                                  Queue<WarcReader> openedReaders) {
+        this.path = path;
+        this.fileSize = fileSize;
+        this.reader = reader;
+        this.ownsReader = ownsReader;
+        this.limit = limit;
+        this.openedReaders = openedReaders;
+    }
+
+    static Stream<WarcRecord> stream(WarcReader reader, Path path) {
+        Queue<WarcReader> openedReaders = new ConcurrentLinkedQueue<>();
+        long fileSize;
+        try {
+            fileSize = Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        WarcRecordSpliterator spliterator = new WarcRecordSpliterator(path, fileSize, reader, false, Long.MAX_VALUE,
+                openedReaders);
+        return StreamSupport.stream(spliterator, false).onClose(() -> closeAll(openedReaders));
+    }
+
+    static Stream<WarcRecord> stream(List<Path> paths) throws IOException {
+        long[] sizes = new long[paths.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Files.size(paths.get(i));
+        }
+        Queue<WarcReader> openedReaders = new ConcurrentLinkedQueue<>();
+        return StreamSupport.stream(new MultiFile(paths, sizes, 0, paths.size(), null, openedReaders), false)
+                .onClose(() -> closeAll(openedReaders));
+    }
+
+    private static WarcRecordSpliterator open(Path path, long fileSize, Queue<WarcReader> openedReaders) {
+        try {
+            WarcReader reader = new WarcReader(path);
+            openedReaders.add(reader);
+            return new WarcRecordSpliterator(path, fileSize, reader, true, Long.MAX_VALUE, openedReaders);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeAll(Queue<WarcReader> readers) {
+        for (WarcReader reader = readers.poll(); reader != null; reader = readers.poll()) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super WarcRecord> action) {
+        if (reader == null) return false;
+        WarcRecord record;
+        try {
+            record = reader.nextRecord(limit);
+            if (record == null) {
+                if (ownsReader) {
+                    openedReaders.remove(reader);
+                    reader.close();
+                }
+                reader = null;
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        action.accept(record);
+        return true;
+    }
+
+    @Override
+    public Spliterator<WarcRecord> trySplit() {
+        if (reader == null) return null;
+        WarcCompression compression = reader.compression();
+        if (compression != WarcCompression.NONE && compression != WarcCompression.GZIP) return null;
+        long from = reader.position();
+        long to = end();
+        if (to - from < MIN_SPLIT_SIZE) return null;
+        try {
+            FileChannel channel = FileChannel.open(path);
+            long splitAt;
+            try {
+                splitAt = WarcReader.findRecordStart(channel, compression, from + (to - from) / 2, to);
+                if (splitAt < 0) {
+                    channel.close();
+                    return null;
+                }
+                channel.position(splitAt);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            WarcReader suffixReader = new WarcReader(channel);
+            suffixReader.copySettingsFrom(reader);
+            suffixReader.endPosition = reader.endPosition;
+            openedReaders.add(suffixReader);
+
+            WarcRecordSpliterator prefix = new WarcRecordSpliterator(path, fileSize, reader, ownsReader, splitAt,
+                    openedReaders);
+            reader = suffixReader;
+            ownsReader = true;
+            return prefix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        if (reader == null) return 0;
+        return Math.max(0, end() - reader.position());
+    }
+
+    private long end() {
+        return Math.min(Math.min(limit, reader.endPosition), fileSize);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Spans a list of files. Splits divide the list of files until only one remains and then split that file.
+     */
+    private static class MultiFile implements Spliterator<WarcRecord> {
+        private final List<Path> paths;
+        private final long[] sizes;
+        private final Queue<WarcReader> openedReaders;
+        private int index;
+        private final int end;
+        private WarcRecordSpliterator current;
+
+        MultiFile(List<Path> paths, long[] sizes, int index, int end, WarcRecordSpliterator current,
+                  Queue<WarcReader> openedReaders) {
+            this.paths = paths;
+            this.sizes = sizes;
+            this.index = index;
+            this.end = end;
+            this.current = current;
+            this.openedReaders = openedReaders;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super WarcRecord> action) {
+            while (true) {
+                if (current == null) {
+                    if (index >= end) return false;
+                    current = open(paths.get(index), sizes[index], openedReaders);
+                    index++;
+                }
+                if (current.tryAdvance(action)) return true;
+                current = null;
+            }
+        }
+
+        @Override
+        public Spliterator<WarcRecord> trySplit() {
+            if (end - index >= (current == null ? 2 : 1)) {
+                // the prefix takes the file in progress (if any) and the first half of the unopened files
+                int mid = (index + end) / 2;
+                MultiFile prefix = new MultiFile(paths, sizes, index, mid, current, openedReaders);
+                index = mid;
+                current = null;
+                return prefix;
+            }
+            if (current == null && index < end) {
+                current = open(paths.get(index), sizes[index], openedReaders);
+                index++;
+            }
+            return current == null ? null : current.trySplit();
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = current == null ? 0 : current.estimateSize();
+            for (int i = index; i < end; i++) {
+                size += sizes[i];
+            }
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
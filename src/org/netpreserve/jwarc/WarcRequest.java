@@ -20,6 +20,12 @@ public class WarcRequest extends WarcCaptureRecord {
         super(version, headers, body);
     }
 
+    @Override
+    void recycle(MessageVersion version, MessageHeaders headers, MessageBody body) {
+        super.recycle(version, headers, body);
+        http = null;
+    }
+
     /**
      * Parses the content body of this record as HTTP request.
      * <p>
@@ -27,19 +33,21 @@ public class WarcRequest extends WarcCaptureRecord {
      */
     public HttpRequest http() throws IOException {
         if (http == null) {
-            ByteBuffer buffer = ByteBuffer.allocate(8192);
-            buffer.flip();
             MessageBody body = body();
             if (body.position() != 0) throw new IllegalStateException("http() cannot be called after reading from body");
             try {
-                if (body instanceof LengthedBody) {
+                if (body instanceof LengthedBody && reuseContext != null) {
+                    http = reuseContext.parseRequest((LengthedBody) body);
+                } else if (body instanceof LengthedBody) {
+                    ByteBuffer buffer = ByteBuffer.allocate(8192);
+                    buffer.flip();
                     // if we can, save a copy of the raw header and push it back so we don't invalidate body
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
                     LengthedBody lengthed = (LengthedBody) body;
                     http = HttpRequest.parse(lengthed.discardPushbackOnRead(), buffer, Channels.newChannel(baos));
                     lengthed.pushback(baos.toByteArray());
                 } else {
-                    http = HttpRequest.parse(body, buffer);
+                    http = HttpRequest.parse(body);
                 }
             } catch (ParsingException e) {
                 e.recordSource = recordSource;
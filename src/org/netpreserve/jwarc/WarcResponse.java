@@ -21,6 +21,13 @@ public class WarcResponse extends WarcCaptureRecord {
         super(version, headers, body);
     }
 
+    @Override
+    void recycle(MessageVersion version, MessageHeaders headers, MessageBody body) {
+        super.recycle(version, headers, body);
+        http = null;
+        gemini = null;
+    }
+
     /**
      * Parses the HTTP response captured by this record.
      * <p>
@@ -31,7 +38,9 @@ public class WarcResponse extends WarcCaptureRecord {
             MessageBody body = body();
             if (body.position() != 0) throw new IllegalStateException("http() cannot be called after reading from body");
             try {
-                if (body instanceof LengthedBody) {
+                if (body instanceof LengthedBody && reuseContext != null) {
+                    http = reuseContext.parseResponse((LengthedBody) body, false);
+                } else if (body instanceof LengthedBody) {
                     // if we can, save a copy of the raw header and push it back so we don't invalidate body
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
                     LengthedBody lengthed = (LengthedBody) body;
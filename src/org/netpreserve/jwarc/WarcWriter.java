@@ -5,27 +5,31 @@
 
 package org.netpreserve.jwarc;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritableByteChannel;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 import static java.nio.file.StandardOpenOption.*;
 
@@ -34,27 +38,71 @@ import static java.nio.file.StandardOpenOption.*;
  */
 public class WarcWriter implements Closeable {
     private static final byte[] TRAILER = new byte[]{'\r', '\n', '\r', '\n'};
+    private static final int MAX_DICTIONARY_SAMPLE = 128 * 1024;
+    private static final int ZSTD_LEVEL = 3;
+    private static final int COMPRESSION_SAMPLE_SIZE = 8192;
+    static final int WRITE_BUFFER_SIZE = 65536;
     private final WritableByteChannel channel;
     private final WarcCompression compression;
-    private final ByteBuffer buffer = ByteBuffer.allocate(8192);
-    private final String digestAlgorithm = "SHA-1";
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private final HeaderEncoder headerEncoder = new HeaderEncoder();
+    private volatile String digestAlgorithm = "sha1";
     private final AtomicLong position = new AtomicLong(0);
+    private final long startPosition;
     private final Set<Socket> fetchSockets = Collections.synchronizedSet(new HashSet<>());
+    private final ConnectionPool connectionPool = new ConnectionPool();
     private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
     private volatile boolean closing = false;
+    private int compressionThreads = Runtime.getRuntime().availableProcessors();
+    private volatile CompressionPolicy compressionPolicy;
+    private volatile CompressionListener compressionListener;
+    private AsyncRecordWriter asyncWriter;
 
     public WarcWriter(WritableByteChannel channel, WarcCompression compression) throws IOException {
+        this(channel, compression, null);
+    }
+
+    /**
+     * Creates a WarcWriter which compresses each record as a separate zstd frame using a dictionary. The dictionary
+     * is written to the start of the output as a skippable frame so readers can decompress the file without being
+     * given it separately.
+     *
+     * @param channel the channel to write to
+     * @param compression the compression to use, a dictionary is only supported for {@link WarcCompression#ZSTD}
+     * @param zstdDictionary a zstd dictionary, for example from {@link #trainZstdDictionary(Iterable, int)}, or null
+     * @throws IOException if an I/O error occurs or zstd-jni is not installed
+     */
+    public WarcWriter(WritableByteChannel channel, WarcCompression compression, byte[] zstdDictionary)
+            throws IOException {
         this.compression = compression;
+        if (zstdDictionary != null && compression != WarcCompression.ZSTD) {
+            throw new IllegalArgumentException("Dictionary not supported with compression: " + compression);
+        }
+        this.startPosition = channel instanceof SeekableByteChannel ? ((SeekableByteChannel) channel).position() : 0;
         if (compression == WarcCompression.GZIP) {
             this.channel = new GzipChannel(channel);
+        } else if (compression == WarcCompression.ZSTD) {
+            try {
+                this.channel = (WritableByteChannel) zstdClass()
+                        .getConstructor(WritableByteChannel.class, int.class, byte[].class)
+                        .newInstance(channel, ZSTD_LEVEL, zstdDictionary);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            } catch (InstantiationException | IllegalAccessException | NoSuchMethodException e) {
+                throw new IOException(e);
+            }
         } else if (compression == WarcCompression.NONE || compression == null) {
             this.channel = channel;
         } else {
             throw new IllegalArgumentException("Unsupported compression: " + compression);
         }
 
-        if (channel instanceof SeekableByteChannel) {
-            position.set(((SeekableByteChannel) channel).position());
+        if (this.channel instanceof CompressingChannel) {
+            // account for any dictionary frame
+            position.set(startPosition + ((CompressingChannel) this.channel).outputPosition());
+        } else {
+            position.set(startPosition);
         }
     }
 
@@ -77,18 +125,224 @@ public class WarcWriter implements Closeable {
     }
 
     public synchronized void write(WarcRecord record) throws IOException {
-        // TODO: buffer headers
-        position.addAndGet(channel.write(ByteBuffer.wrap(record.serializeHeader())));
+        if (channel instanceof CompressingChannel) {
+            CompressingChannel compressor = (CompressingChannel) channel;
+            int level = -1;
+            if (compressor instanceof GzipChannel) {
+                level = compressionLevel(record);
+                ((GzipChannel) compressor).setLevel(level);
+            }
+            long start = compressor.outputPosition();
+            long uncompressedLength = writeRecord(compressor, record, headerEncoder, buffer);
+            compressor.finish();
+            long compressedLength = compressor.outputPosition() - start;
+            position.addAndGet(compressedLength);
+            if (level >= 0) reportCompression(record, level, uncompressedLength, compressedLength);
+        } else {
+            position.addAndGet(writeRecord(channel, record, headerEncoder, buffer));
+        }
+    }
+
+    /**
+     * Serializes a record to a channel returning the number of bytes written.
+     * <p>
+     * The header and body are accumulated in the buffer so a small record takes a single write (a gathering write
+     * when the channel supports it, rather than copying the header). Large bodies backed by a FileChannel are
+     * sent with transferTo when the output is not being compressed.
+     */
+    static long writeRecord(WritableByteChannel channel, WarcRecord record, HeaderEncoder encoder,
+                            ByteBuffer buffer) throws IOException {
+        ByteBuffer header = record.serializedHeader != null ? ByteBuffer.wrap(record.serializedHeader) :
+                encoder.encode(record);
         MessageBody body = record.body();
+        buffer.clear();
+        long written = 0;
+
+        if (!(channel instanceof CompressingChannel) && body instanceof LengthedBody &&
+                body.size() - body.position() > buffer.capacity()) {
+            written += writeFully(channel, header);
+            written += ((LengthedBody) body).transferTo(channel);
+            written += writeFully(channel, ByteBuffer.wrap(TRAILER));
+            return written;
+        }
+
+        if (!(channel instanceof GatheringByteChannel) && header.remaining() <= buffer.capacity() / 2) {
+            buffer.put(header);
+        }
         while (body.read(buffer) >= 0) {
-            buffer.flip();
-            position.addAndGet(channel.write(buffer));
-            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                written += flush(channel, header, buffer);
+            }
         }
-        position.addAndGet(channel.write(ByteBuffer.wrap(TRAILER)));
-        if (compression == WarcCompression.GZIP) {
-            ((GzipChannel) channel).finish();
-            position.set(((GzipChannel) channel).outputPosition());
+        if (buffer.remaining() < TRAILER.length) {
+            written += flush(channel, header, buffer);
+        }
+        buffer.put(TRAILER);
+        written += flush(channel, header, buffer);
+        return written;
+    }
+
+    /**
+     * Writes out the buffer preceded by the header if it hasn't been written yet.
+     */
+    private static long flush(WritableByteChannel channel, ByteBuffer header, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        long written = 0;
+        if (header.hasRemaining() && channel instanceof GatheringByteChannel) {
+            ByteBuffer[] buffers = new ByteBuffer[]{header, buffer};
+            while (header.hasRemaining() || buffer.hasRemaining()) {
+                written += ((GatheringByteChannel) channel).write(buffers);
+            }
+        } else {
+            written += writeFully(channel, header);
+            written += writeFully(channel, buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private static long writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        return written;
+    }
+
+    /**
+     * Writes a record without blocking while it is compressed.
+     * <p>
+     * For gzip output, serializing and deflating each record happens on a pool of worker threads (see
+     * {@link #setCompressionThreads(int)}) and the finished gzip members are appended to the file in the order
+     * this method was called. Other compression types and records too large to buffer in memory are written by
+     * the appending thread directly.
+     * <p>
+     * The record and its body must not be used by the caller until the returned future completes. This method
+     * blocks if too many records are already waiting to be written.
+     *
+     * @return a future completing with the position and length of the written record
+     */
+    public CompletableFuture<WriteResult> writeAsync(WarcRecord record) throws IOException {
+        AsyncRecordWriter asyncWriter;
+        synchronized (this) {
+            if (closing) throw new ClosedChannelException();
+            if (this.asyncWriter == null) {
+                this.asyncWriter = new AsyncRecordWriter(this, compression == WarcCompression.GZIP,
+                        compressionThreads);
+            }
+            asyncWriter = this.asyncWriter;
+        }
+        return asyncWriter.submit(record);
+    }
+
+    /**
+     * Sets the algorithm used for the block and payload digests of records created by
+     * {@link #fetch(URI, FetchOptions)}, such as "sha1" (the default), "sha256" or "sha512".
+     *
+     * @throws NoSuchAlgorithmException if the algorithm is unsupported
+     * @see WarcDigest#getDigester(String)
+     */
+    public void setDigestAlgorithm(String algorithm) throws NoSuchAlgorithmException {
+        WarcDigest.getDigester(algorithm);
+        this.digestAlgorithm = algorithm;
+    }
+
+    /**
+     * Sets the number of threads {@link #writeAsync(WarcRecord)} uses to compress records. Defaults to the number
+     * of available processors. Must be called before the first call to writeAsync.
+     */
+    public synchronized void setCompressionThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (asyncWriter != null) throw new IllegalStateException("writeAsync has already been called");
+        this.compressionThreads = threads;
+    }
+
+    /**
+     * Appends a record to the output. If the record has already been compressed to a gzip member it is copied as-is.
+     */
+    synchronized WriteResult append(WarcRecord record, byte[] gzipMember, int level, long uncompressedLength)
+            throws IOException {
+        long start = position.get();
+        if (gzipMember == null) {
+            write(record);
+        } else {
+            position.addAndGet(((GzipChannel) channel).writeMember(ByteBuffer.wrap(gzipMember)));
+            reportCompression(record, level, uncompressedLength, gzipMember.length);
+        }
+        return new WriteResult(start, position.get() - start);
+    }
+
+    /**
+     * Sets the policy used to choose the deflate level for each record when writing gzip. By default every record is
+     * compressed with {@link java.util.zip.Deflater#BEST_COMPRESSION}.
+     *
+     * @see CompressionPolicy#adaptive()
+     */
+    public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    /**
+     * Registers a listener called with the deflate level and compressed size of each gzip record written. This is
+     * intended for tuning a {@link CompressionPolicy}.
+     */
+    public void onCompression(CompressionListener compressionListener) {
+        this.compressionListener = compressionListener;
+    }
+
+    /**
+     * Asks the compression policy for the level to compress a record with, giving it a sample of the block.
+     */
+    int compressionLevel(WarcRecord record) throws IOException {
+        CompressionPolicy policy = compressionPolicy;
+        if (policy == null) return Deflater.BEST_COMPRESSION;
+        MessageBody body = record.body();
+        ByteBuffer sample = body instanceof LengthedBody ? ((LengthedBody) body).peek(COMPRESSION_SAMPLE_SIZE) : null;
+        int level = policy.level(record, sample == null ? ByteBuffer.allocate(0) : sample);
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return level;
+    }
+
+    private void reportCompression(WarcRecord record, int level, long uncompressedLength, long compressedLength) {
+        CompressionListener listener = compressionListener;
+        if (listener != null) listener.compressed(record, level, uncompressedLength, compressedLength);
+    }
+
+    /**
+     * Trains a zstd dictionary for use with {@link #WarcWriter(WritableByteChannel, WarcCompression, byte[])}.
+     * A few hundred records similar to the ones that will be written make a good sample. The header and up to the
+     * first 128 KiB of the body of each sample record is used, consuming the record body.
+     *
+     * @param samples records to train the dictionary from
+     * @param dictionarySize maximum size of the dictionary in bytes, 112640 is the zstd default
+     * @throws IOException if an I/O error occurs reading the samples or zstd-jni is not installed
+     */
+    public static byte[] trainZstdDictionary(Iterable<? extends WarcRecord> samples, int dictionarySize)
+            throws IOException {
+        List<byte[]> sampleBytes = new ArrayList<>();
+        for (WarcRecord record : samples) {
+            ByteArrayOutputStream sample = new ByteArrayOutputStream();
+            sample.write(record.serializeHeader());
+            sample.write(IOUtils.readNBytes(record.body().stream(), MAX_DICTIONARY_SAMPLE));
+            sampleBytes.add(sample.toByteArray());
+        }
+        try {
+            return (byte[]) zstdClass().getDeclaredMethod("trainDictionary", List.class, int.class)
+                    .invoke(null, sampleBytes, dictionarySize);
+        } catch (InvocationTargetException e) {
+            throw new IOException("Failed to train zstd dictionary", e.getCause());
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Class<?> zstdClass() throws IOException {
+        try {
+            return Class.forName("org.netpreserve.jwarc.ZstdCompressingChannel");
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            throw new IOException("ZStandard encoder not found, please install com.github.luben:zstd-jni", e);
         }
     }
 
@@ -107,14 +361,35 @@ public class WarcWriter implements Closeable {
      * @throws IOException if an IO error occurred
      */
     public FetchResult fetch(URI uri, FetchOptions options) throws IOException {
-        HttpRequest httpRequest = new HttpRequest.Builder("GET", uri)
-                .version(MessageVersion.HTTP_1_0) // until we support chunked encoding
-                .addHeader("User-Agent", options.userAgent)
-                .addHeader("Connection", "close")
-                .build();
+        HttpRequest.Builder builder = new HttpRequest.Builder("GET", uri)
+                .addHeader("User-Agent", options.userAgent);
+        if (options.keepAlive) {
+            builder.version(MessageVersion.HTTP_1_1);
+        } else {
+            builder.version(MessageVersion.HTTP_1_0).addHeader("Connection", "close");
+        }
+        HttpRequest httpRequest = builder.build();
         return fetch(uri, httpRequest, options);
     }
 
+    /**
+     * Downloads many remote resources concurrently recording the requests and responses as WARC records.
+     * <p>
+     * Fetches run on virtual threads on JDK 21+ and otherwise on a pool of threads, subject to the limits set by
+     * {@link FetchOptions#concurrency(int)}, {@link FetchOptions#perHostConcurrency(int)} and
+     * {@link FetchOptions#perHostDelay(long)}. The URIs are read from the iterable lazily so it may be very large.
+     * <p>
+     * The returned stream yields a result for each URI in the order the fetches finish. A fetch that fails has its
+     * exception in {@link FetchResult#exception()} and doesn't stop the others. Closing the stream stops further
+     * fetches from being started.
+     *
+     * @param uris URLs to download
+     * @param options fetch options to use
+     */
+    public Stream<FetchResult> fetchAll(Iterable<URI> uris, FetchOptions options) {
+        return new FetchScheduler(this, uris, options).start();
+    }
+
     /**
      * Downloads a remote resource recording the request and response as WARC records.
      * <p>
@@ -137,20 +412,36 @@ public class WarcWriter implements Closeable {
      */
     public FetchResult fetch(URI uri, HttpRequest httpRequest, FetchOptions options) throws IOException {
         Exception exception = null;
-        Path tempPath = Files.createTempFile("jwarc", ".tmp");
         closeLock.readLock().lock();
-        try (FileChannel tempFile = FileChannel.open(tempPath, READ, WRITE, DELETE_ON_CLOSE, TRUNCATE_EXISTING)) {
+        try (SpillBuffer tempFile = new SpillBuffer()) {
+            String digestAlgorithm = this.digestAlgorithm;
             byte[] httpRequestBytes = httpRequest.serializeHeader();
-            MessageDigest requestBlockDigest = MessageDigest.getInstance(digestAlgorithm);
+            MessageDigest requestBlockDigest = WarcDigest.getDigester(digestAlgorithm);
             requestBlockDigest.update(httpRequestBytes);
+            boolean keepAlive = options.keepAlive && httpRequest.version().equals(MessageVersion.HTTP_1_1)
+                    && !httpRequest.headers().contains("Connection", "close");
 
-            MessageDigest responseBlockDigest = MessageDigest.getInstance(digestAlgorithm);
-            InetAddress ip = null;
-            Instant date = Instant.now();
-            long startMillis = date.toEpochMilli();
-            WarcTruncationReason truncationReason = null;
-            long totalLength = 0;
-            try (Socket socket = IOUtils.connect(uri.getScheme(), uri.getHost(), uri.getPort())) {
+            MessageDigest responseBlockDigest;
+            PayloadDigester payloadDigester;
+            InetAddress ip;
+            Instant date;
+            WarcTruncationReason truncationReason;
+            long totalLength;
+            for (int attempt = 0; ; attempt++) {
+                responseBlockDigest = WarcDigest.getDigester(digestAlgorithm);
+                payloadDigester = new PayloadDigester(WarcDigest.getDigester(digestAlgorithm),
+                        httpRequest.method().equals("HEAD"));
+                ip = null;
+                date = Instant.now();
+                long startMillis = date.toEpochMilli();
+                truncationReason = null;
+                totalLength = 0;
+                tempFile.truncate(0);
+                Socket socket = keepAlive && attempt == 0 ?
+                        connectionPool.reuse(uri.getScheme(), uri.getHost(), uri.getPort()) : null;
+                boolean reused = socket != null;
+                if (socket == null) socket = connectionPool.connect(uri.getScheme(), uri.getHost(), uri.getPort());
+                boolean reusable = false;
                 fetchSockets.add(socket);
                 try {
                     if (closing) throw new IOException("WarcWriter closed");
@@ -172,11 +463,16 @@ public class WarcWriter implements Closeable {
                         totalLength += n;
                         tempFile.write(ByteBuffer.wrap(buf, 0, n));
                         responseBlockDigest.update(buf, 0, n);
+                        int consumed = payloadDigester.update(buf, 0, n);
                         try {
                             if (options.copyTo != null) options.copyTo.write(buf, 0, n);
                         } catch (IOException e) {
                             // ignore
                         }
+                        if (payloadDigester.isComplete()) {
+                            reusable = keepAlive && consumed == n && payloadDigester.isReusable();
+                            break;
+                        }
                         if (options.maxTime > 0 && System.currentTimeMillis() - startMillis > options.maxTime) {
                             truncationReason = WarcTruncationReason.TIME;
                             break;
@@ -187,17 +483,23 @@ public class WarcWriter implements Closeable {
                         }
                     }
                 } catch (SocketException e) {
+                    if (reused && totalLength == 0 && !closing) continue; // server closed the idle connection
                     if (!closing || totalLength == 0) throw e;
                     truncationReason = WarcTruncationReason.UNSPECIFIED;
                     exception = e;
                 } finally {
                     fetchSockets.remove(socket);
+                    if (reusable && !closing) {
+                        connectionPool.release(uri.getScheme(), uri.getHost(), uri.getPort(), socket);
+                    } else {
+                        socket.close();
+                    }
                 }
+                if (reused && totalLength == 0) continue; // server closed the idle connection
+                break;
             }
 
-            tempFile.position(0);
-            MessageDigest responsePayloadDigest = tryCalculatingPayloadDigest(tempFile);
-
+            MessageDigest responsePayloadDigest = payloadDigester.digest();
             tempFile.position(0);
             WarcResponse.Builder responseBuilder = new WarcResponse.Builder(uri)
                     .blockDigest(new WarcDigest(responseBlockDigest))
@@ -210,7 +512,6 @@ public class WarcWriter implements Closeable {
             if (truncationReason != null) responseBuilder.truncated(truncationReason);
             WarcResponse response = responseBuilder.build();
             response.http(); // force HTTP header to be parsed before body is consumed so that caller can use it
-            write(response);
             WarcRequest request = new WarcRequest.Builder(uri)
                     .blockDigest(new WarcDigest(requestBlockDigest))
                     .date(date)
@@ -218,8 +519,11 @@ public class WarcWriter implements Closeable {
                     .concurrentTo(response.id())
                     .build();
             request.http(); // force HTTP header to be parsed before body is consumed so that caller can use it
-            write(request);
-            return new FetchResult(request, response, exception);
+            synchronized (this) { // keep the pair together when fetching concurrently
+                write(response);
+                write(request);
+            }
+            return new FetchResult(uri, request, response, exception);
         } catch (NoSuchAlgorithmException e) {
             throw new IOException(e);
         } finally {
@@ -227,28 +531,6 @@ public class WarcWriter implements Closeable {
         }
     }
 
-    private MessageDigest tryCalculatingPayloadDigest(FileChannel channel) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
-        try {
-            HttpResponse httpResponse = HttpResponse.parse(channel);
-            byte[] buffer = new byte[8192];
-            InputStream steam = httpResponse.body().stream();
-            long payloadLength = 0;
-            while (true) {
-                int n = steam.read(buffer);
-                if (n < 0) break;
-                digest.update(buffer, 0, n);
-                payloadLength += n;
-            }
-            if (payloadLength == 0) {
-                return null;
-            }
-        } catch (Exception e) {
-           return null;
-        }
-        return digest;
-    }
-
     /**
      * Returns the byte position the next record will be written to.
      * <p>
@@ -261,13 +543,22 @@ public class WarcWriter implements Closeable {
 
     /**
      * Closes the channel. If there are any active fetches they will be truncated and current progress written.
+     * Records passed to {@link #writeAsync(WarcRecord)} are written before closing.
      */
     @Override
     public void close() throws IOException {
         closing = true;
+        AsyncRecordWriter asyncWriter;
+        synchronized (this) {
+            asyncWriter = this.asyncWriter;
+        }
         for (Socket socket: fetchSockets) {
             socket.close();
         }
+        connectionPool.close();
+        if (asyncWriter != null) {
+            asyncWriter.close();
+        }
 
         // block until all fetches have finished writing
         closeLock.writeLock().lock();
@@ -277,4 +568,21 @@ public class WarcWriter implements Closeable {
             closeLock.writeLock().unlock();
         }
     }
+
+    /**
+     * Receives the outcome of compressing each record. See {@link #onCompression(CompressionListener)}.
+     */
+    @FunctionalInterface
+    public interface CompressionListener {
+        /**
+         * Called after a record has been compressed. May be called from a background thread when using
+         * {@link #writeAsync(WarcRecord)}, but never concurrently.
+         *
+         * @param record the record, its body will have been consumed
+         * @param level the deflate level used
+         * @param uncompressedLength length of the serialized record
+         * @param compressedLength length of the gzip member written
+         */
+        void compressed(WarcRecord record, int level, long uncompressedLength, long compressedLength);
+    }
 }
@@ -0,0 +1,279 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A pool of WarcWriters each writing to its own file, so that concurrent threads write to different files instead of
+ * waiting on a single writer.
+ * <p>
+ * Each file is rolled over once it reaches a target size or age. New files are named from a template and begin with a
+ * warcinfo record. While being written a file has the suffix ".open" which is removed when it is closed.
+ * <pre>
+ * try (WarcWriterPool pool = new WarcWriterPool(directory, 4).maxFileSize(100_000_000)) {
+ *     pool.write(record);
+ *     pool.fetch(uri, new FetchOptions());
+ * }
+ * </pre>
+ */
+@SuppressWarnings("UnusedReturnValue")
+public class WarcWriterPool implements Closeable {
+    static final String OPEN_SUFFIX = ".open";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS")
+            .withZone(ZoneOffset.UTC);
+
+    private final Path directory;
+    private final int size;
+    private final BlockingQueue<Slot> idle;
+    private final AtomicInteger serial = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile long maxFileSize = 1024 * 1024 * 1024;
+    private volatile long maxFileAge = 0;
+    private volatile String filenameTemplate = "jwarc-{timestamp}-{serial}-{hostname}.warc.gz";
+    private volatile Map<String, List<String>> warcinfoFields;
+    private volatile Consumer<Path> fileClosedHandler;
+
+    /**
+     * @param directory the directory to create the WARC files in
+     * @param size      the number of files to write concurrently
+     */
+    public WarcWriterPool(Path directory, int size) {
+        if (size < 1) throw new IllegalArgumentException("size must be at least 1");
+        this.directory = directory;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.add(new Slot());
+        }
+        Map<String, List<String>> fields = new LinkedHashMap<>();
+        fields.put("software", Collections.singletonList("jwarc"));
+        fields.put("format", Collections.singletonList("WARC File Format 1.1"));
+        fields.put("conformsTo", Collections.singletonList(
+                "https://iipc.github.io/warc-specifications/specifications/warc-format/warc-1.1/"));
+        this.warcinfoFields = fields;
+    }
+
+    /**
+     * Starts a new file once a file reaches this many bytes. The file will exceed it by up to one record (or one
+     * fetch). Default: 1 GiB.
+     */
+    public WarcWriterPool maxFileSize(long bytes) {
+        this.maxFileSize = bytes;
+        return this;
+    }
+
+    /**
+     * Starts a new file for the next write once a file has been open for this many milliseconds. Files are not
+     * rolled while they sit idle. Default: 0 (no limit).
+     */
+    public WarcWriterPool maxFileAge(long millis) {
+        this.maxFileAge = millis;
+        return this;
+    }
+
+    /**
+     * Sets the template for naming new files. The compression is determined by the extension. The following
+     * variables are substituted:
+     * <ul>
+     *     <li><code>{timestamp}</code> - the UTC time the file was opened as yyyyMMddHHmmssSSS</li>
+     *     <li><code>{serial}</code> - a five digit sequence number, counting files opened by this pool</li>
+     *     <li><code>{hostname}</code> - the name of the local host</li>
+     * </ul>
+     * Default: <code>jwarc-{timestamp}-{serial}-{hostname}.warc.gz</code>
+     */
+    public WarcWriterPool filenameTemplate(String template) {
+        this.filenameTemplate = template;
+        return this;
+    }
+
+    /**
+     * Sets the fields of the warcinfo record written at the start of each file.
+     */
+    public WarcWriterPool warcinfoFields(Map<String, List<String>> fields) {
+        this.warcinfoFields = new LinkedHashMap<>(fields);
+        return this;
+    }
+
+    /**
+     * Registers a handler called with the final path of each file after it has been closed.
+     */
+    public WarcWriterPool onFileClosed(Consumer<Path> handler) {
+        this.fileClosedHandler = handler;
+        return this;
+    }
+
+    /**
+     * Writes a record to one of the pool's files.
+     */
+    public void write(WarcRecord record) throws IOException {
+        withWriter(writer -> {
+            writer.write(record);
+            return null;
+        });
+    }
+
+    /**
+     * Downloads a remote resource recording the request and response to one of the pool's files.
+     *
+     * @see WarcWriter#fetch(URI, FetchOptions)
+     */
+    public FetchResult fetch(URI uri, FetchOptions options) throws IOException {
+        return withWriter(writer -> writer.fetch(uri, options));
+    }
+
+    /**
+     * Runs an action with exclusive use of one of the pool's writers, blocking until one is available. Records
+     * written by a single action are kept together in the same file.
+     */
+    public <T> T withWriter(WriterAction<T> action) throws IOException {
+        if (closed) throw new ClosedChannelException();
+        Slot slot;
+        try {
+            slot = idle.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        try {
+            if (closed) throw new ClosedChannelException();
+            long maxFileAge = this.maxFileAge;
+            if (slot.writer != null && maxFileAge > 0 && System.currentTimeMillis() - slot.openedAt >= maxFileAge) {
+                slot.close();
+            }
+            if (slot.writer == null) {
+                slot.open();
+            }
+            T result = action.apply(slot.writer);
+            if (slot.writer.position() >= maxFileSize) {
+                slot.close();
+            }
+            return result;
+        } finally {
+            idle.add(slot);
+        }
+    }
+
+    /**
+     * The number of files written to concurrently.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Waits for any writes in progress and then closes all the open files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        List<Slot> slots = new ArrayList<>();
+        IOException exception = null;
+        try {
+            while (slots.size() < size) {
+                Slot slot = idle.take();
+                slots.add(slot);
+                try {
+                    slot.close();
+                } catch (IOException e) {
+                    if (exception == null) exception = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } finally {
+            // hand the slots back so that any threads still waiting for one see the pool is closed
+            idle.addAll(slots);
+        }
+        if (exception != null) throw exception;
+    }
+
+    String filename(Instant timestamp, int serial) {
+        return filenameTemplate
+                .replace("{timestamp}", TIMESTAMP_FORMAT.format(timestamp))
+                .replace("{serial}", String.format("%05d", serial))
+                .replace("{hostname}", hostname());
+    }
+
+    private static String hostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * An action run with one of the pool's writers.
+     */
+    @FunctionalInterface
+    public interface WriterAction<T> {
+        T apply(WarcWriter writer) throws IOException;
+    }
+
+    private class Slot {
+        WarcWriter writer;
+        Path path;
+        Path openPath;
+        long openedAt;
+
+        void open() throws IOException {
+            Instant now = Instant.now();
+            String filename = filename(now, serial.getAndIncrement());
+            Path path = directory.resolve(filename);
+            Path openPath = directory.resolve(filename + OPEN_SUFFIX);
+            if (Files.exists(path)) throw new IOException("File already exists: " + path);
+            FileChannel channel = FileChannel.open(openPath, WRITE, CREATE_NEW);
+            WarcWriter writer;
+            try {
+                writer = new WarcWriter(channel, WarcCompression.forPath(path));
+                writer.write(new Warcinfo.Builder()
+                        .date(now)
+                        .filename(filename)
+                        .fields(warcinfoFields)
+                        .build());
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                Files.deleteIfExists(openPath);
+                throw e;
+            }
+            this.writer = writer;
+            this.path = path;
+            this.openPath = openPath;
+            this.openedAt = now.toEpochMilli();
+        }
+
+        void close() throws IOException {
+            if (writer == null) return;
+            WarcWriter writer = this.writer;
+            this.writer = null;
+            writer.close();
+            Files.move(openPath, path);
+            Consumer<Path> handler = fileClosedHandler;
+            if (handler != null) handler.accept(path);
+        }
+    }
+}
@@ -23,6 +23,12 @@ public class Warcinfo extends WarcRecord {
         super(version, headers, body);
     }
 
+    @Override
+    void recycle(MessageVersion version, MessageHeaders headers, MessageBody body) {
+        super.recycle(version, headers, body);
+        fields = null;
+    }
+
     /**
      * The name of the file originally containing this warcinfo record.
      */
@@ -0,0 +1,34 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+/**
+ * Where a record was written by {@link WarcWriter#writeAsync(WarcRecord)}.
+ */
+public class WriteResult {
+    private final long position;
+    private final long length;
+
+    WriteResult(long position, long length) {
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * The byte position of the start of the record in the output (relative to the position the channel was in when
+     * the WarcWriter was created, if not seekable).
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * The number of (compressed) bytes the record occupies in the output.
+     */
+    public long length() {
+        return length;
+    }
+}
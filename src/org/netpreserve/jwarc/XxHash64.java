@@ -0,0 +1,157 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import java.security.MessageDigest;
+
+/**
+ * The <a href="https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md">XXH64</a> non-cryptographic hash
+ * (seed 0) as a MessageDigest. The digest is the 8 byte hash in big-endian (canonical) order.
+ * <p>
+ * It is much faster than the cryptographic digests and so suits deduplication and integrity checks where the input
+ * isn't adversarial. It is not suitable where collisions could be deliberately engineered.
+ */
+class XxHash64 extends MessageDigest implements Cloneable {
+    static final String ALGORITHM = "XXH64";
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private long v1, v2, v3, v4;
+    private long totalLength;
+    private byte[] buffer = new byte[32];
+    private int buffered;
+
+    XxHash64() {
+        super(ALGORITHM);
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 8;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        buffer[buffered++] = input;
+        totalLength++;
+        if (buffered == 32) {
+            consumeStripe(buffer, 0);
+            buffered = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        totalLength += len;
+        if (buffered > 0) {
+            int n = Math.min(len, 32 - buffered);
+            System.arraycopy(input, offset, buffer, buffered, n);
+            buffered += n;
+            offset += n;
+            len -= n;
+            if (buffered < 32) return;
+            consumeStripe(buffer, 0);
+            buffered = 0;
+        }
+        while (len >= 32) {
+            consumeStripe(input, offset);
+            offset += 32;
+            len -= 32;
+        }
+        System.arraycopy(input, offset, buffer, 0, len);
+        buffered = len;
+    }
+
+    private void consumeStripe(byte[] b, int off) {
+        v1 = round(v1, readLong(b, off));
+        v2 = round(v2, readLong(b, off + 8));
+        v3 = round(v3, readLong(b, off + 16));
+        v4 = round(v4, readLong(b, off + 24));
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long h;
+        if (totalLength >= 32) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = P5;
+        }
+        h += totalLength;
+        int i = 0;
+        for (; i + 8 <= buffered; i += 8) {
+            h ^= round(0, readLong(buffer, i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i + 4 <= buffered) {
+            h ^= (readInt(buffer, i) & 0xffffffffL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < buffered; i++) {
+            h ^= (buffer[i] & 0xff) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        engineReset();
+        byte[] digest = new byte[8];
+        for (int j = 7; j >= 0; j--) {
+            digest[j] = (byte) h;
+            h >>>= 8;
+        }
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        totalLength = 0;
+        buffered = 0;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        XxHash64 copy = (XxHash64) super.clone();
+        copy.buffer = buffer.clone();
+        return copy;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * P1 + P4;
+    }
+
+    private static long readLong(byte[] b, int off) {
+        return (b[off] & 0xffL) | (b[off + 1] & 0xffL) << 8 | (b[off + 2] & 0xffL) << 16 | (b[off + 3] & 0xffL) << 24
+                | (b[off + 4] & 0xffL) << 32 | (b[off + 5] & 0xffL) << 40 | (b[off + 6] & 0xffL) << 48
+                | (b[off + 7] & 0xffL) << 56;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+}
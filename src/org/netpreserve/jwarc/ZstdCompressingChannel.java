@@ -0,0 +1,127 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import com.github.luben.zstd.EndDirective;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictTrainer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * A channel that compresses the input using zstd, writing each record as an independent frame as per
+ * <a href="https://iipc.github.io/warc-specifications/specifications/warc-zstd/">warc-zstd</a>. If a dictionary
+ * is given it is written first as a skippable frame and used to compress every subsequent frame.
+ */
+class ZstdCompressingChannel implements CompressingChannel {
+    static final int DICT_MAGIC = 0x184D2A5D;
+    private final WritableByteChannel channel;
+    private final ZstdCompressCtx ctx = new ZstdCompressCtx();
+    private final ByteBuffer input = ByteBuffer.allocateDirect(128 * 1024);
+    private final ByteBuffer output = ByteBuffer.allocateDirect((int) Zstd.compressBound(128 * 1024));
+    private boolean frameStarted;
+    private long outputPosition;
+
+    public ZstdCompressingChannel(WritableByteChannel channel, int level, byte[] dictionary) throws IOException {
+        this.channel = channel;
+        ctx.setLevel(level);
+        ctx.setChecksum(true);
+        if (dictionary != null) {
+            writeDictionaryFrame(dictionary, level);
+            ctx.loadDict(dictionary);
+        }
+    }
+
+    private void writeDictionaryFrame(byte[] dictionary, int level) throws IOException {
+        byte[] compressed = Zstd.compress(dictionary, level);
+        ByteBuffer frame = ByteBuffer.allocate(8 + compressed.length).order(ByteOrder.LITTLE_ENDIAN);
+        frame.putInt(DICT_MAGIC);
+        frame.putInt(compressed.length);
+        frame.put(compressed);
+        frame.flip();
+        writeFully(frame);
+    }
+
+    /**
+     * Trains a dictionary from a list of samples.
+     */
+    static byte[] trainDictionary(List<byte[]> samples, int dictionarySize) {
+        long totalSize = 0;
+        for (byte[] sample : samples) {
+            totalSize += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(totalSize, Integer.MAX_VALUE), dictionarySize);
+        for (byte[] sample : samples) {
+            if (!trainer.addSample(sample)) break;
+        }
+        return trainer.trainSamples();
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int len = src.remaining();
+        while (src.hasRemaining()) {
+            IOUtils.transfer(src, input);
+            if (!input.hasRemaining()) {
+                compress(EndDirective.CONTINUE);
+            }
+        }
+        if (len > 0) frameStarted = true;
+        return len;
+    }
+
+    @Override
+    public int finish() throws IOException {
+        if (!frameStarted) return 0;
+        long start = outputPosition;
+        compress(EndDirective.END);
+        frameStarted = false;
+        return (int) (outputPosition - start);
+    }
+
+    private void compress(EndDirective endOp) throws IOException {
+        input.flip();
+        while (true) {
+            boolean done = ctx.compressDirectByteBufferStream(output, input, endOp);
+            output.flip();
+            writeFully(output);
+            output.clear();
+            if (endOp == EndDirective.END ? done : !input.hasRemaining()) break;
+        }
+        input.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            outputPosition += channel.write(buffer);
+        }
+    }
+
+    @Override
+    public long outputPosition() {
+        return outputPosition;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            ctx.close();
+            channel.close();
+        }
+    }
+}
@@ -51,12 +51,12 @@ class ZstdDecompressingChannel implements ReadableByteChannel, DecompressingChan
             dictionary = readDictionary(channel, buffer, frameSize);
         } else if (magic == ZSTD_MAGIC) {
             boolean requiresDictionary = (buffer.get(buffer.position() + 4) & DICT_ID_FLAG_MASK) != 0;
-            if (requiresDictionary) {
-                if (channel instanceof SeekableByteChannel) {
-                    dictionary = readDictionaryFromStartOfChannel((SeekableByteChannel) channel);
-                } else {
-                    throw new IOException("dictionary required but channel is not seekable");
-                }
+            if (channel instanceof SeekableByteChannel) {
+                // when starting mid-file (such as for a byte range) look for a dictionary even if the frame doesn't
+                // record a dictionary id, as raw content dictionaries don't have one
+                dictionary = readDictionaryFromStartOfChannel((SeekableByteChannel) channel);
+            } else if (requiresDictionary) {
+                throw new IOException("dictionary required but channel is not seekable");
             } else {
                 dictionary = null;
             }
@@ -74,6 +74,7 @@ class ZstdDecompressingChannel implements ReadableByteChannel, DecompressingChan
     private ZstdDictDecompress readDictionaryFromStartOfChannel(SeekableByteChannel channel) throws IOException {
         final ZstdDictDecompress dictionary;
         long savedPosition = channel.position();
+        long savedBytesRead = channelBytesRead;
         try {
             channel.position(0);
             ByteBuffer frameBuffer = ByteBuffer.allocate(8);
@@ -89,6 +90,7 @@ class ZstdDecompressingChannel implements ReadableByteChannel, DecompressingChan
             }
         } finally {
             channel.position(savedPosition);
+            channelBytesRead = savedBytesRead; // the dictionary isn't part of this channel's input
         }
         return dictionary;
     }
@@ -121,17 +123,21 @@ class ZstdDecompressingChannel implements ReadableByteChannel, DecompressingChan
 
     @Override
     public int read(ByteBuffer dst) throws IOException {
+        boolean eof = false;
         if (!buffer.hasRemaining()) {
             buffer.compact();
             int n = channel.read(buffer);
             buffer.flip();
             if (n > 0) channelBytesRead += n;
+            eof = n < 0;
         }
         if (zstdStream == null) {
             zstdStream = new ZstdBufferDecompressingStream(buffer);
             if (dictionary != null) zstdStream.setDict(dictionary);
         }
-        return zstdStream.read(dst);
+        int n = zstdStream.read(dst);
+        if (n == 0 && eof && !buffer.hasRemaining()) return -1;
+        return n;
     }
 
     @Override
@@ -0,0 +1,63 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import java.time.Instant;
+import java.util.function.Predicate;
+
+/**
+ * A lookup in a sorted CDX index: the key to seek to and a test for the lines that follow it which stops at the
+ * first line that doesn't match.
+ */
+class CdxQuery {
+    final String startKey;
+    final Predicate<String> matches;
+
+    private CdxQuery(String startKey, Predicate<String> matches) {
+        this.startKey = startKey;
+        this.matches = matches;
+    }
+
+    /**
+     * Lines with the given urlkey captured within a date range (inclusive). Either bound may be null.
+     */
+    static CdxQuery exact(String urlKey, Instant from, Instant to) {
+        String keyPrefix = urlKey + " ";
+        String fromKey = from == null ? keyPrefix : keyPrefix + CdxFields.DATE_FORMAT.format(from);
+        String toDate = to == null ? null : CdxFields.DATE_FORMAT.format(to);
+        return new CdxQuery(fromKey, line -> line.startsWith(keyPrefix) &&
+                (toDate == null || compareDate(line, keyPrefix.length(), toDate) <= 0));
+    }
+
+    /**
+     * Lines whose urlkey starts with the given prefix.
+     */
+    static CdxQuery prefix(String urlKeyPrefix) {
+        return new CdxQuery(urlKeyPrefix, line -> line.startsWith(urlKeyPrefix));
+    }
+
+    /**
+     * Compares the date field starting at offset against a 14 digit date. Shorter dates are compared as if they were
+     * padded with zeros.
+     */
+    private static int compareDate(String line, int offset, String date) {
+        for (int i = 0; i < date.length(); i++) {
+            int j = offset + i;
+            char c = j < line.length() && line.charAt(j) != ' ' ? line.charAt(j) : '0';
+            if (c != date.charAt(i)) return c - date.charAt(i);
+        }
+        return 0;
+    }
+
+    /**
+     * Guesses whether an index line is CDXJ from whether its third field is a JSON block.
+     */
+    static boolean isCdxj(String line) {
+        int i = line.indexOf(' ');
+        int j = i < 0 ? -1 : line.indexOf(' ', i + 1);
+        return j >= 0 && j + 1 < line.length() && line.charAt(j + 1) == '{';
+    }
+}
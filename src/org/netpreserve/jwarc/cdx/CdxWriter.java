@@ -5,28 +5,45 @@
 
 package org.netpreserve.jwarc.cdx;
 
-import java.io.Closeable;
-import java.io.IOException;
-import java.io.Writer;
+import java.io.*;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import org.netpreserve.jwarc.*;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * Writes CDX records.
  */
 public class CdxWriter implements Closeable {
+    private static final long SPLIT_SIZE = 256 * 1024 * 1024;
     private final Writer writer;
     private CdxFormat format = CdxFormat.CDX11;
     private boolean postAppend = false;
     private Predicate<WarcRecord> recordFilter;
     private Consumer<String> warningHandler;
-    private List<String> sortBuffer;
+    private ExternalSorter sorter;
+    private long sortBufferSize = ExternalSorter.DEFAULT_RUN_SIZE;
+    /**
+     * Size of the byte ranges that large files are split into by {@link #process(List, boolean, int)}.
+     */
+    long splitSize = SPLIT_SIZE;
 
     public CdxWriter(Writer writer) {
         this.writer = writer;
@@ -64,8 +81,8 @@ public class CdxWriter implements Closeable {
     }
 
     private void writeLine(String line) throws IOException {
-        if (sortBuffer != null) {
-            sortBuffer.add(line);
+        if (sorter != null) {
+            sorter.add(line);
         } else {
             writer.write(line);
             writer.write('\n');
@@ -76,8 +93,11 @@ public class CdxWriter implements Closeable {
      * Processes a list of WARC files writing CDX records for each response or resource record.
      */
     public void process(List<Path> warcFiles, boolean useAbsolutePaths) throws IOException {
-        for (Path file : warcFiles) {
-            try (WarcReader reader = new WarcReader(file)) {
+        try (WarcCollectionReader warcs = new WarcCollectionReader(warcFiles)) {
+            Optional<WarcReader> nextReader;
+            while ((nextReader = warcs.nextReader()).isPresent()) {
+                WarcReader reader = nextReader.get();
+                Path file = warcs.path();
                 reader.setLenient(true);
                 String filename = (useAbsolutePaths ? file.toAbsolutePath() : file.getFileName()).toString();
                 reader.onWarning(message -> emitWarning(filename, reader.position(), message));
@@ -86,6 +106,144 @@ public class CdxWriter implements Closeable {
         }
     }
 
+    /**
+     * Processes a list of WARC files on several threads. Output is identical to
+     * {@link #process(List, boolean)}: records are written in file order (or merged in sorted order if sorting is
+     * enabled) with the same offsets and lengths.
+     * <p>
+     * Files are indexed concurrently and large uncompressed or record-at-a-time gzipped WARC files are split into
+     * byte ranges at record boundaries. Files aren't split when post-append is enabled as a response's request record
+     * could fall in the next range. Each range's output is buffered (in memory or a temp file if large) until all the
+     * output before it has been written.
+     *
+     * @param threads number of files or ranges to index at once
+     */
+    public void process(List<Path> warcFiles, boolean useAbsolutePaths, int threads) throws IOException {
+        if (threads <= 1) {
+            process(warcFiles, useAbsolutePaths);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "jwarc-cdx");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<SpillBuffer>> pending = new ArrayDeque<>();
+        try {
+            for (Path file : warcFiles) {
+                String filename = (useAbsolutePaths ? file.toAbsolutePath() : file.getFileName()).toString();
+                long[] splits = planSplits(file);
+                for (int i = 0; i + 1 < splits.length; i++) {
+                    long start = splits[i];
+                    long end = splits[i + 1];
+                    // read ahead a bounded number of ranges so that buffered output doesn't pile up
+                    while (pending.size() >= threads * 2) {
+                        writeBufferedLines(pending.removeFirst());
+                    }
+                    pending.add(executor.submit(() -> processRange(file, filename, start, end)));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeBufferedLines(pending.removeFirst());
+            }
+        } finally {
+            // shutdownNow() drops queued tasks without completing their futures, so cancel them first and only
+            // collect the ones that had already finished
+            for (Future<SpillBuffer> future : pending) {
+                if (!future.cancel(true)) {
+                    try {
+                        future.get().close();
+                    } catch (InterruptedException | ExecutionException | CancellationException | IOException e) {
+                        // already failing
+                    }
+                }
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the byte offsets to split a file at, beginning with 0 and ending with Long.MAX_VALUE.
+     */
+    private long[] planSplits(Path file) throws IOException {
+        long size = Files.size(file);
+        if (postAppend || size < splitSize * 2) return new long[]{0, Long.MAX_VALUE};
+        try (WarcReader reader = new WarcReader(file)) {
+            WarcCompression compression = reader.compression();
+            if (compression != WarcCompression.NONE && compression != WarcCompression.GZIP) {
+                return new long[]{0, Long.MAX_VALUE};
+            }
+            // ARC files can't be split as record boundaries are found by looking for WARC headers
+            Optional<WarcRecord> first = reader.next();
+            if (!first.isPresent() || !first.get().version().getProtocol().equals("WARC")) {
+                return new long[]{0, Long.MAX_VALUE};
+            }
+        } catch (IOException e) {
+            // leave it to processRange() to report the problem
+            return new long[]{0, Long.MAX_VALUE};
+        }
+        int ranges = (int) (size / splitSize);
+        long[] splits = new long[ranges + 1];
+        for (int i = 1; i < ranges; i++) {
+            splits[i] = i * splitSize;
+        }
+        splits[ranges] = Long.MAX_VALUE;
+        return splits;
+    }
+
+    private SpillBuffer processRange(Path file, String filename, long start, long end) throws IOException {
+        SpillBuffer buffer = new SpillBuffer(SpillBuffer.DEFAULT_THRESHOLD, "jwarc-cdx");
+        try (WarcReader reader = start == 0 && end == Long.MAX_VALUE ? new WarcReader(file) : openRange(file, start, end)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(buffer), UTF_8));
+            CdxWriter rangeWriter = new CdxWriter(out);
+            rangeWriter.format = format;
+            rangeWriter.postAppend = postAppend;
+            rangeWriter.recordFilter = recordFilter;
+            rangeWriter.warningHandler = warningHandler;
+            reader.setLenient(true);
+            reader.onWarning(message -> emitWarning(filename, reader.position(), message));
+            rangeWriter.process(reader, filename);
+            out.flush(); // not closed as that would close the buffer
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException(); // cancelled
+            buffer.position(0);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    private static WarcReader openRange(Path file, long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(file);
+        try {
+            return WarcReader.forRange(channel, start, end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void writeBufferedLines(Future<SpillBuffer> future) throws IOException {
+        SpillBuffer buffer;
+        try {
+            buffer = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+        try (Reader reader = new InputStreamReader(Channels.newInputStream(buffer), UTF_8)) {
+            for (Iterator<String> lines = new ExternalSorter.LineIterator(reader); lines.hasNext(); ) {
+                writeLine(lines.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     /**
      * Writes CDX records for each response or resource record in a WARC file.
      */
@@ -236,24 +394,51 @@ public class CdxWriter implements Closeable {
         this.warningHandler = warningHandler;
     }
 
+    /**
+     * Buffers records and writes them sorted when the writer is closed. Lines are ordered byte-wise like
+     * {@code LC_ALL=C sort}. Indexes larger than the sort buffer are sorted in runs which are compressed into temp
+     * files and merged on close, so memory use stays bounded.
+     *
+     * @see #setSortBufferSize(long)
+     */
     public void setSort(boolean sort) {
         if (sort) {
-            sortBuffer = new ArrayList<>();
-        } else {
-            sortBuffer = null;
+            if (sorter == null) {
+                sorter = new ExternalSorter(sortBufferSize, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            }
+        } else if (sorter != null) {
+            try {
+                sorter.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sorter = null;
         }
     }
 
+    /**
+     * Sets the approximate amount of memory in bytes used for each sorted run (default 64 MiB). Besides the run being
+     * filled, one run per sorting thread (up to four) may be waiting to be sorted and written, so peak memory use is
+     * up to (threads + 1) times this. Must be called before {@link #setSort(boolean)}.
+     */
+    public void setSortBufferSize(long sortBufferSize) {
+        if (sortBufferSize <= 0) throw new IllegalArgumentException("sortBufferSize must be positive");
+        this.sortBufferSize = sortBufferSize;
+    }
+
     @Override
     public void close() throws IOException {
-        if (sortBuffer != null) {
-            sortBuffer.sort(null);
-            for (String line : sortBuffer) {
-                writer.write(line);
-                writer.write('\n');
+        try {
+            if (sorter != null) {
+                try {
+                    sorter.writeTo(writer);
+                } finally {
+                    sorter.close();
+                    sorter = null;
+                }
             }
-            sortBuffer = null;
+        } finally {
+            writer.close();
         }
-        writer.close();
     }
 }
\ No newline at end of file
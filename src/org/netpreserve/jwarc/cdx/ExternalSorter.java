@@ -0,0 +1,328 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sorts lines in bounded memory. Lines are collected into runs of roughly {@code runSize} bytes which are sorted on
+ * background threads and spilled to gzipped temp files. The runs are then k-way merged when the output is written.
+ * Input that fits in a single run is sorted in memory without touching the disk.
+ * <p>
+ * Lines are ordered by their UTF-8 bytes, the same as {@code LC_ALL=C sort}.
+ */
+class ExternalSorter implements Closeable {
+    static final long DEFAULT_RUN_SIZE = 64 * 1024 * 1024;
+    static final Comparator<String> BYTE_ORDER = ExternalSorter::compareUtf8;
+    private static final int MAX_MERGE_WIDTH = 128;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long runSize;
+    private final int threads;
+    private final Deque<Future<Path>> pendingRuns = new ArrayDeque<>();
+    private final List<Path> runs = new ArrayList<>();
+    private List<String> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private ExecutorService executor;
+
+    ExternalSorter(long runSize, int threads) {
+        this.runSize = runSize;
+        this.threads = Math.max(1, threads);
+    }
+
+    void add(String line) throws IOException {
+        buffer.add(line);
+        // rough heap cost of a short string and its list slot
+        bufferedBytes += line.length() * 2L + 64;
+        if (bufferedBytes >= runSize) {
+            spill();
+        }
+    }
+
+    /**
+     * Hands the buffered lines to a background thread to be sorted and written to a temp file. Waits for the oldest
+     * run first if there are already as many in progress as threads, so at most threads + 1 runs (counting the one
+     * being filled) are in memory.
+     */
+    private void spill() throws IOException {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "jwarc-cdx-sort");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        while (pendingRuns.size() >= threads) {
+            runs.add(await(pendingRuns.removeFirst()));
+        }
+        List<String> lines = buffer;
+        pendingRuns.add(executor.submit(() -> {
+            lines.sort(BYTE_ORDER);
+            return writeRun(lines.iterator());
+        }));
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Writes all the lines added so far in sorted order.
+     */
+    void writeTo(Writer writer) throws IOException {
+        buffer.sort(BYTE_ORDER);
+        if (runs.isEmpty() && pendingRuns.isEmpty()) {
+            for (String line : buffer) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } else {
+            while (!pendingRuns.isEmpty()) {
+                runs.add(await(pendingRuns.removeFirst()));
+            }
+            // merge in several passes if there are too many runs to open at once
+            while (runs.size() + 1 > MAX_MERGE_WIDTH) {
+                List<Path> group = new ArrayList<>(runs.subList(0, MAX_MERGE_WIDTH));
+                runs.subList(0, MAX_MERGE_WIDTH).clear();
+                runs.add(mergeRuns(group));
+            }
+            List<Iterator<String>> inputs = new ArrayList<>();
+            List<Reader> readers = new ArrayList<>();
+            try {
+                for (Path run : runs) {
+                    Reader reader = openRun(run);
+                    readers.add(reader);
+                    inputs.add(new LineIterator(reader));
+                }
+                inputs.add(buffer.iterator());
+                for (Iterator<String> it = merge(inputs); it.hasNext(); ) {
+                    writer.write(it.next());
+                    writer.write('\n');
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (Reader reader : readers) {
+                    reader.close();
+                }
+            }
+        }
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+    }
+
+    private Path mergeRuns(List<Path> group) throws IOException {
+        List<Reader> readers = new ArrayList<>();
+        try {
+            List<Iterator<String>> inputs = new ArrayList<>();
+            for (Path run : group) {
+                Reader reader = openRun(run);
+                readers.add(reader);
+                inputs.add(new LineIterator(reader));
+            }
+            return writeRun(merge(inputs));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (Reader reader : readers) {
+                reader.close();
+            }
+            for (Path run : group) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    private static Path writeRun(Iterator<String> lines) throws IOException {
+        Path file = Files.createTempFile("jwarc-cdx-sort", ".gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        }, UTF_8)) {
+            while (lines.hasNext()) {
+                writer.write(lines.next());
+                writer.write('\n');
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private static Reader openRun(Path run) throws IOException {
+        return new InputStreamReader(new GZIPInputStream(Files.newInputStream(run), BUFFER_SIZE), UTF_8);
+    }
+
+    /**
+     * Merges sorted inputs into a single sorted sequence.
+     */
+    private static Iterator<String> merge(List<Iterator<String>> inputs) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, inputs.size()));
+        for (Iterator<String> input : inputs) {
+            if (input.hasNext()) heads.add(new Head(input.next(), input));
+        }
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public String next() {
+                Head head = heads.poll();
+                if (head == null) throw new NoSuchElementException();
+                String line = head.line;
+                if (head.input.hasNext()) {
+                    head.line = head.input.next();
+                    heads.add(head);
+                }
+                return line;
+            }
+        };
+    }
+
+    private static Path await(Future<Path> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Compares strings by code point, which for valid UTF-16 is the same as comparing their UTF-8 encodings
+     * byte by byte. (String.compareTo orders characters above the surrogate range before supplementary ones.)
+     */
+    static int compareUtf8(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                if (x >= 0xd800 && y >= 0xd800) {
+                    // shift surrogates above the rest of the BMP
+                    x += x < 0xe000 ? 0x2000 : -0x800;
+                    y += y < 0xe000 ? 0x2000 : -0x800;
+                }
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Discards any remaining runs and deletes their temp files.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        while (!pendingRuns.isEmpty()) {
+            try {
+                runs.add(await(pendingRuns.removeFirst()));
+            } catch (IOException e) {
+                if (error == null) error = e;
+            }
+        }
+        if (executor != null) executor.shutdown();
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                if (error == null) error = e;
+            }
+        }
+        runs.clear();
+        buffer = new ArrayList<>();
+        if (error != null) throw error;
+    }
+
+    private static class Head implements Comparable<Head> {
+        String line;
+        final Iterator<String> input;
+
+        Head(String line, Iterator<String> input) {
+            this.line = line;
+            this.input = input;
+        }
+
+        @Override
+        public int compareTo(Head o) {
+            return compareUtf8(line, o.line);
+        }
+    }
+
+    /**
+     * Reads lines ending in '\n'. Unlike BufferedReader.readLine() a lone '\r' isn't treated as a line break.
+     */
+    static class LineIterator implements Iterator<String> {
+        private final Reader reader;
+        private final char[] chars = new char[BUFFER_SIZE];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private String next;
+
+        LineIterator(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        private String readLine() throws IOException {
+            line.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(chars);
+                    position = 0;
+                    if (limit < 0) {
+                        limit = 0;
+                        return line.length() > 0 ? line.toString() : null;
+                    }
+                }
+                for (int i = position; i < limit; i++) {
+                    if (chars[i] == '\n') {
+                        line.append(chars, position, i - position);
+                        position = i + 1;
+                        return line.toString();
+                    }
+                }
+                line.append(chars, position, limit - position);
+                position = limit;
+            }
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String line = next;
+            next = null;
+            return line;
+        }
+    }
+}
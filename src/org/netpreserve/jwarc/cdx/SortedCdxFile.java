@@ -0,0 +1,228 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Looks up records in a sorted, uncompressed CDX or CDXJ file without reading the whole file.
+ * <p>
+ * The file must be sorted byte-wise (as by {@code LC_ALL=C sort} or {@link CdxWriter#setSort(boolean)}). Lookups
+ * binary search on the urlkey using positional reads, realigning each probe to the start of the next line, so only a
+ * few small reads are needed regardless of the size of the file. Keys are normalized SURTs as produced by
+ * {@link org.netpreserve.jwarc.URIs#toNormalizedSurt(String)}.
+ * <p>
+ * Safe for concurrent use by multiple threads. The returned streams read lazily and must not be consumed after the
+ * file is closed.
+ */
+public class SortedCdxFile implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int SCAN_THRESHOLD = 2 * BUFFER_SIZE;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CdxFormat format;
+    private final long dataStart;
+
+    public SortedCdxFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path);
+        try {
+            this.size = channel.size();
+            CdxFormat format = null;
+            Cursor cursor = new Cursor(0);
+            long dataStart = 0;
+            for (String line = cursor.nextString(); line != null; line = cursor.nextString()) {
+                if (line.startsWith(" CDX ") || line.startsWith("CDX ")) {
+                    format = new CdxFormat(line);
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    if (format == null && CdxQuery.isCdxj(line)) format = CdxFormat.CDXJ;
+                    break;
+                }
+                dataStart = cursor.position;
+            }
+            this.format = format;
+            this.dataStart = dataStart;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the records for the given urlkey in date order.
+     */
+    public Stream<CdxRecord> exact(String urlKey) throws IOException {
+        return exact(urlKey, null, null);
+    }
+
+    /**
+     * Returns the records for the given urlkey captured within a date range (inclusive) in date order.
+     *
+     * @param from earliest date or null for no lower bound
+     * @param to   latest date or null for no upper bound
+     */
+    public Stream<CdxRecord> exact(String urlKey, Instant from, Instant to) throws IOException {
+        return scan(CdxQuery.exact(urlKey, from, to));
+    }
+
+    /**
+     * Returns the records whose urlkey starts with the given prefix in sorted order. For example "org,example)/" for
+     * all captures on a host or "org,example)/dir/" for a directory.
+     */
+    public Stream<CdxRecord> prefix(String urlKeyPrefix) throws IOException {
+        return scan(CdxQuery.prefix(urlKeyPrefix));
+    }
+
+    private Stream<CdxRecord> scan(CdxQuery query) throws IOException {
+        Cursor cursor = new Cursor(lowerBound(query.startKey.getBytes(UTF_8)));
+        Iterator<CdxRecord> iterator = new Iterator<CdxRecord>() {
+            CdxRecord next;
+            boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    try {
+                        String line = cursor.nextString();
+                        if (line == null || !query.matches.test(line)) {
+                            done = true;
+                        } else {
+                            next = new CdxRecord(line, format);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public CdxRecord next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                CdxRecord record = next;
+                next = null;
+                return record;
+            }
+        };
+        return StreamSupport.stream(spliteratorUnknownSize(iterator, ORDERED | NONNULL), false);
+    }
+
+    /**
+     * Returns the offset of the first line which is greater than or equal to the key.
+     */
+    long lowerBound(byte[] key) throws IOException {
+        // invariant: lines starting before lo are less than the key and lines starting at hi or later are not
+        long lo = dataStart;
+        long hi = size;
+        while (hi - lo > SCAN_THRESHOLD) {
+            long mid = lo + (hi - lo) / 2;
+            Cursor cursor = new Cursor(mid - 1);
+            cursor.nextLine(); // realign to the first line starting at or after mid
+            long lineStart = cursor.position;
+            if (lineStart >= hi) {
+                hi = mid;
+                continue;
+            }
+            byte[] line = cursor.nextLine();
+            if (compare(line, key) < 0) {
+                lo = cursor.position;
+            } else {
+                hi = lineStart;
+            }
+        }
+        Cursor cursor = new Cursor(lo);
+        while (cursor.position < hi) {
+            long lineStart = cursor.position;
+            byte[] line = cursor.nextLine();
+            if (line == null || compare(line, key) >= 0) return lineStart;
+        }
+        return hi;
+    }
+
+    private static int compare(byte[] line, byte[] key) {
+        int n = Math.min(line.length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (line[i] & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) return cmp;
+        }
+        return line.length - key.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads lines sequentially from an offset using positional reads.
+     */
+    private class Cursor {
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private long bufferStart;
+        private int limit;
+        long position;
+
+        Cursor(long position) {
+            this.position = position;
+            this.bufferStart = position;
+        }
+
+        /**
+         * Returns the next line without its trailing newline or null at the end of the file.
+         */
+        byte[] nextLine() throws IOException {
+            int start = (int) (position - bufferStart);
+            int scanFrom = start;
+            while (true) {
+                for (int i = scanFrom; i < limit; i++) {
+                    if (buffer[i] == '\n') {
+                        position = bufferStart + i + 1;
+                        return Arrays.copyOfRange(buffer, start, i);
+                    }
+                }
+                scanFrom = limit;
+                if (bufferStart + limit >= size) {
+                    if (start == limit) return null;
+                    position = bufferStart + limit;
+                    return Arrays.copyOfRange(buffer, start, limit);
+                }
+                // keep the partial line and read more after it
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, limit - start);
+                    bufferStart += start;
+                    limit -= start;
+                    scanFrom -= start;
+                    start = 0;
+                }
+                if (limit == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                int n = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit), bufferStart + limit);
+                if (n < 0) throw new IOException("File truncated while reading");
+                limit += n;
+            }
+        }
+
+        String nextString() throws IOException {
+            byte[] line = nextLine();
+            return line == null ? null : new String(line, UTF_8);
+        }
+    }
+}
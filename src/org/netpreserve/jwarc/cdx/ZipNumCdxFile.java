@@ -0,0 +1,296 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
+
+/**
+ * Looks up records in a ZipNum compressed CDX or CDXJ index such as those written by {@link ZipNumWriter} or pywb.
+ * <p>
+ * The summary (.idx) file is loaded into memory and binary searched for the block that may contain the first match.
+ * Only the blocks needed are then read and inflated. Recently inflated blocks are kept in a small LRU cache so that
+ * neighbouring lookups don't inflate the same block again.
+ * <p>
+ * Data files for each part named in the summary are located using a .loc file next to the summary (lines of
+ * "part&lt;TAB&gt;path") if there is one, otherwise as "part.cdx.gz" in the same directory.
+ * <p>
+ * Safe for concurrent use by multiple threads. The returned streams read lazily and must not be consumed after the
+ * file is closed.
+ *
+ * @see SortedCdxFile
+ */
+public class ZipNumCdxFile implements Closeable {
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private final String[] keys;
+    private final FileChannel[] channels;
+    private final int[] blockParts;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final BlockCache cache = new BlockCache();
+    private final CdxFormat format;
+
+    /**
+     * @param summaryFile the .idx summary file
+     */
+    public ZipNumCdxFile(Path summaryFile) throws IOException {
+        Path dir = summaryFile.toAbsolutePath().getParent();
+        Map<String, Path> locations = readLocations(summaryFile, dir);
+        List<String> keys = new ArrayList<>();
+        List<Integer> parts = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        Map<String, Integer> partNumbers = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(summaryFile, UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isEmpty()) continue;
+                String[] fields = line.split("\t");
+                if (fields.length < 4) throw new IOException("Invalid ZipNum summary line: " + line);
+                keys.add(fields[0]);
+                parts.add(partNumbers.computeIfAbsent(fields[1], k -> partNumbers.size()));
+                offsets.add(Long.parseLong(fields[2]));
+                lengths.add(Integer.parseInt(fields[3]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid ZipNum summary file: " + summaryFile, e);
+        }
+        this.keys = keys.toArray(new String[0]);
+        this.blockParts = parts.stream().mapToInt(Integer::intValue).toArray();
+        this.offsets = offsets.stream().mapToLong(Long::longValue).toArray();
+        this.lengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+        this.channels = new FileChannel[partNumbers.size()];
+        try {
+            for (Map.Entry<String, Integer> entry : partNumbers.entrySet()) {
+                channels[entry.getValue()] = FileChannel.open(locate(entry.getKey(), locations, dir));
+            }
+            this.format = detectFormat();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static Map<String, Path> readLocations(Path summaryFile, Path dir) throws IOException {
+        String name = summaryFile.getFileName().toString();
+        Path locFile = summaryFile.resolveSibling((name.endsWith(".idx") ?
+                name.substring(0, name.length() - ".idx".length()) : name) + ".loc");
+        Map<String, Path> locations = new HashMap<>();
+        if (!Files.exists(locFile)) return locations;
+        for (String line : Files.readAllLines(locFile, UTF_8)) {
+            String[] fields = line.split("\t");
+            // the first location is used if a part is listed more than once
+            if (fields.length >= 2) locations.putIfAbsent(fields[0], dir.resolve(fields[1]));
+        }
+        return locations;
+    }
+
+    private static Path locate(String part, Map<String, Path> locations, Path dir) throws IOException {
+        Path path = locations.get(part);
+        if (path != null) return path;
+        path = dir.resolve(part + ".cdx.gz");
+        if (Files.exists(path)) return path;
+        path = dir.resolve(part);
+        if (Files.exists(path)) return path;
+        throw new FileNotFoundException("No data file found for ZipNum part " + part);
+    }
+
+    private CdxFormat detectFormat() throws IOException {
+        if (keys.length == 0) return null;
+        for (String line : block(0)) {
+            if (line.startsWith(" CDX ") || line.startsWith("CDX ")) return new CdxFormat(line);
+            if (!line.isEmpty() && !line.startsWith("#")) return CdxQuery.isCdxj(line) ? CdxFormat.CDXJ : null;
+        }
+        return null;
+    }
+
+    /**
+     * Sets the maximum number of inflated blocks to keep in memory (default 64). Zero disables the cache.
+     */
+    public void setCacheSize(int blocks) {
+        cache.setMaxSize(blocks);
+    }
+
+    /**
+     * Returns the records for the given urlkey in date order.
+     */
+    public Stream<CdxRecord> exact(String urlKey) {
+        return exact(urlKey, null, null);
+    }
+
+    /**
+     * Returns the records for the given urlkey captured within a date range (inclusive) in date order.
+     *
+     * @param from earliest date or null for no lower bound
+     * @param to   latest date or null for no upper bound
+     */
+    public Stream<CdxRecord> exact(String urlKey, Instant from, Instant to) {
+        return scan(CdxQuery.exact(urlKey, from, to));
+    }
+
+    /**
+     * Returns the records whose urlkey starts with the given prefix in sorted order.
+     */
+    public Stream<CdxRecord> prefix(String urlKeyPrefix) {
+        return scan(CdxQuery.prefix(urlKeyPrefix));
+    }
+
+    private Stream<CdxRecord> scan(CdxQuery query) {
+        Iterator<CdxRecord> iterator = new Iterator<CdxRecord>() {
+            int blockIndex = startBlock(query.startKey);
+            String[] lines;
+            int lineIndex;
+            CdxRecord next;
+            boolean done;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && !done) {
+                    if (lines == null || lineIndex >= lines.length) {
+                        if (blockIndex >= keys.length) {
+                            done = true;
+                            break;
+                        }
+                        try {
+                            lines = block(blockIndex++);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        lineIndex = 0;
+                        continue;
+                    }
+                    String line = lines[lineIndex++];
+                    if (line.isEmpty() || line.startsWith("#") || line.startsWith(" CDX ") || line.startsWith("CDX ")
+                            || ExternalSorter.compareUtf8(line, query.startKey) < 0) {
+                        continue;
+                    }
+                    if (!query.matches.test(line)) {
+                        done = true;
+                        break;
+                    }
+                    try {
+                        next = new CdxRecord(line, format);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public CdxRecord next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                CdxRecord record = next;
+                next = null;
+                return record;
+            }
+        };
+        return StreamSupport.stream(spliteratorUnknownSize(iterator, ORDERED | NONNULL), false);
+    }
+
+    /**
+     * Returns the block just before the first whose key is not less than the given key, as the end of that block may
+     * still hold matching lines.
+     */
+    int startBlock(String key) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ExternalSorter.compareUtf8(keys[mid], key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return Math.max(0, lo - 1);
+    }
+
+    private String[] block(int index) throws IOException {
+        String[] lines = cache.get(index);
+        if (lines == null) {
+            lines = inflate(index);
+            cache.put(index, lines);
+        }
+        return lines;
+    }
+
+    private String[] inflate(int index) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[index]);
+        FileChannel channel = channels[blockParts[index]];
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offsets[index] + buffer.position());
+            if (n < 0) throw new EOFException("ZipNum block " + index + " extends past end of file");
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                new ByteArrayInputStream(buffer.array())), UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (FileChannel channel : channels) {
+            if (channel == null) continue;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (error == null) error = e;
+            }
+        }
+        cache.clear();
+        if (error != null) throw error;
+    }
+
+    private static class BlockCache {
+        private final LinkedHashMap<Integer, String[]> map = new LinkedHashMap<>(16, 0.75f, true);
+        private int maxSize = DEFAULT_CACHE_SIZE;
+
+        synchronized String[] get(int index) {
+            return map.get(index);
+        }
+
+        synchronized void put(int index, String[] lines) {
+            if (maxSize <= 0) return;
+            map.put(index, lines);
+            evict();
+        }
+
+        synchronized void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            evict();
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        private void evict() {
+            for (Iterator<Integer> it = map.keySet().iterator(); map.size() > maxSize && it.hasNext(); ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes sorted CDX lines as a ZipNum compressed index: a data file of gzip members each holding a block of lines
+ * and a plain text summary (.idx) with one line per block as used by pywb:
+ * <pre>
+ * first-urlkey timestamp&lt;TAB&gt;part&lt;TAB&gt;offset&lt;TAB&gt;length&lt;TAB&gt;block-number
+ * </pre>
+ * The part name is the data file's name without its ".cdx.gz" or ".gz" suffix.
+ * <p>
+ * It is a {@link Writer} that splits what is written into lines so it can be given to a {@link CdxWriter} with
+ * sorting enabled. Lines must arrive in byte-wise sorted order.
+ *
+ * @see ZipNumCdxFile
+ */
+public class ZipNumWriter extends Writer {
+    public static final int DEFAULT_LINES_PER_BLOCK = 3000;
+
+    private final OutputStream data;
+    private final Writer summary;
+    private final String part;
+    private final StringBuilder partialLine = new StringBuilder();
+    private final ByteArrayOutputStream blockBuffer = new ByteArrayOutputStream();
+    private int linesPerBlock = DEFAULT_LINES_PER_BLOCK;
+    private GZIPOutputStream block;
+    private String blockKey;
+    private int blockLines;
+    private int blockNumber;
+    private long offset;
+    private String previousLine;
+    private boolean closed;
+
+    /**
+     * @param dataFile    path to write the compressed blocks to (conventionally "name.cdx.gz")
+     * @param summaryFile path to write the block index to (conventionally "name.idx")
+     */
+    public ZipNumWriter(Path dataFile, Path summaryFile) throws IOException {
+        this.part = partName(dataFile);
+        this.data = new BufferedOutputStream(Files.newOutputStream(dataFile));
+        try {
+            this.summary = Files.newBufferedWriter(summaryFile, UTF_8);
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    static String partName(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        if (name.endsWith(".cdx.gz")) return name.substring(0, name.length() - ".cdx.gz".length());
+        if (name.endsWith(".gz")) return name.substring(0, name.length() - ".gz".length());
+        return name;
+    }
+
+    /**
+     * Sets the number of lines in each compressed block (default 3000). Smaller blocks make lookups read less but
+     * compress less well.
+     */
+    public void setLinesPerBlock(int linesPerBlock) {
+        if (linesPerBlock <= 0) throw new IllegalArgumentException("linesPerBlock must be positive");
+        this.linesPerBlock = linesPerBlock;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (closed) throw new IOException("ZipNumWriter is closed");
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (cbuf[i] == '\n') {
+                partialLine.append(cbuf, off, i - off);
+                writeLine(partialLine.toString());
+                partialLine.setLength(0);
+                off = i + 1;
+            }
+        }
+        partialLine.append(cbuf, off, end - off);
+    }
+
+    private void writeLine(String line) throws IOException {
+        if (line.isEmpty()) return;
+        if (previousLine != null && ExternalSorter.compareUtf8(previousLine, line) > 0) {
+            throw new IOException("ZipNum input is not sorted: \"" + line + "\" follows \"" + previousLine + "\"");
+        }
+        previousLine = line;
+        if (block == null) {
+            blockBuffer.reset();
+            block = new GZIPOutputStream(blockBuffer);
+            blockKey = summaryKey(line);
+        }
+        block.write(line.getBytes(UTF_8));
+        block.write('\n');
+        blockLines++;
+        if (blockLines >= linesPerBlock) {
+            finishBlock();
+        }
+    }
+
+    /**
+     * Returns the first two fields of a line (the urlkey and timestamp).
+     */
+    private static String summaryKey(String line) {
+        int i = line.indexOf(' ');
+        if (i >= 0) i = line.indexOf(' ', i + 1);
+        return i < 0 ? line : line.substring(0, i);
+    }
+
+    private void finishBlock() throws IOException {
+        if (block == null) return;
+        block.finish();
+        int length = blockBuffer.size();
+        blockBuffer.writeTo(data);
+        blockNumber++;
+        summary.write(blockKey + "\t" + part + "\t" + offset + "\t" + length + "\t" + blockNumber + "\n");
+        offset += length;
+        block = null;
+        blockLines = 0;
+    }
+
+    /**
+     * Does nothing as a partial block can't be written without affecting the block size.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes any final partial line and block and closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            try {
+                if (partialLine.length() > 0) {
+                    writeLine(partialLine.toString());
+                    partialLine.setLength(0);
+                }
+                finishBlock();
+            } finally {
+                summary.close();
+            }
+        } finally {
+            data.close();
+        }
+    }
+}
@@ -17,17 +17,16 @@ public class CaptureIndex {
     private Capture entrypoint;
 
     public CaptureIndex(List<Path> warcs) throws IOException {
-        for (Path warc : warcs) {
-            try (WarcReader reader = new WarcReader(warc)) {
-                for (WarcRecord record : reader) {
-                    if ((record instanceof WarcResponse || record instanceof WarcResource)) {
-                        WarcCaptureRecord capture = (WarcCaptureRecord) record;
-                        if (URIs.hasHttpOrHttpsScheme(capture.target())) {
-                            Capture entry = new Capture(capture.target(), capture.date(), warc, reader.position());
-                            add(entry);
-                            if (entrypoint == null && MediaType.HTML.equals(capture.payloadType().base())) {
-                                entrypoint = entry;
-                            }
+        try (WarcCollectionReader reader = new WarcCollectionReader(warcs)) {
+            for (WarcRecord record : reader) {
+                if ((record instanceof WarcResponse || record instanceof WarcResource)) {
+                    WarcCaptureRecord capture = (WarcCaptureRecord) record;
+                    if (URIs.hasHttpOrHttpsScheme(capture.target())) {
+                        Capture entry = new Capture(capture.target(), capture.date(), reader.path(),
+                                reader.position());
+                        add(entry);
+                        if (entrypoint == null && MediaType.HTML.equals(capture.payloadType().base())) {
+                            entrypoint = entry;
                         }
                     }
                 }
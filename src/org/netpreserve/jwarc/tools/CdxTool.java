@@ -10,10 +10,12 @@ import org.netpreserve.jwarc.WarcRecord;
 import org.netpreserve.jwarc.WarcRevisit;
 import org.netpreserve.jwarc.cdx.CdxFormat;
 import org.netpreserve.jwarc.cdx.CdxWriter;
+import org.netpreserve.jwarc.cdx.ZipNumWriter;
 
 
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -32,6 +34,8 @@ public class CdxTool {
         boolean postAppend = false;
         boolean digestUnchanged = false;
         boolean sort = false;
+        int threads = 1;
+        String zipnum = null;
         Predicate<WarcRecord> filter = null;
         for (int i = 0; i < args.length; i++) {
             if (args[i].startsWith("-")) {
@@ -64,11 +68,13 @@ public class CdxTool {
                     System.out.println();
                     System.out.println("  -d, --digest-unchanged   Include records with unchanged digest");
                     System.out.println("  -f, --format LEGEND      CDX format may be CDX9, CDX11 or a custom legend");
+                    System.out.println("  -j, --threads N          Index N files (or parts of large files) at once");
                     System.out.println("      --no-header          Don't print the CDX header line");
                     System.out.println("  -p, --post-append        Append the request body to the urlkey field");
                     System.out.println("      --revisits-excluded  Don't index revisit records");
                     System.out.println("  -w, --warc-full-path     Use absolute paths for the filename field");
                     System.out.println("  -t, --record-type       Filter by record type");
+                    System.out.println("      --zipnum NAME        Write a sorted ZipNum index to NAME.cdx.gz and NAME.idx");
                     return;
                 case "--no-header":
                     printHeader = false;
@@ -88,6 +94,13 @@ public class CdxTool {
                 case "--revisits-excluded":
                     filter = record -> !(record instanceof WarcRevisit);
                     break;
+                case "-j":
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--zipnum":
+                    zipnum = args[++i];
+                    break;
                 case "-s":
                 case "--sort":
                     sort = true;
@@ -122,15 +135,17 @@ public class CdxTool {
         if (digestUnchanged) builder.digestUnchanged();
         format = builder.build();
 
-        try (CdxWriter cdxWriter = new CdxWriter(new OutputStreamWriter(System.out))) {
+        Writer output = zipnum == null ? new OutputStreamWriter(System.out) :
+                new ZipNumWriter(Paths.get(zipnum + ".cdx.gz"), Paths.get(zipnum + ".idx"));
+        try (CdxWriter cdxWriter = new CdxWriter(output)) {
             cdxWriter.onWarning(System.err::println);
             cdxWriter.setFormat(format);
             cdxWriter.setPostAppend(postAppend);
             cdxWriter.setRecordFilter(filter);
-            cdxWriter.setSort(sort);
+            cdxWriter.setSort(sort || zipnum != null);
 
             if (printHeader) cdxWriter.writeHeaderLine();
-            cdxWriter.process(files, fullFilePath);
+            cdxWriter.process(files, fullFilePath, threads);
         }
     }
 
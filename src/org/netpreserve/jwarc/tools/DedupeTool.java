@@ -35,20 +35,96 @@ public class DedupeTool {
     private boolean dryRun;
     private boolean quiet;
     private int threads = Runtime.getRuntime().availableProcessors();
-    private Map<WarcDigest, CacheValue> digestCache;
+    private DigestCache digestCache;
     private final AtomicLong errors = new AtomicLong();
 
-    private static class LruCache<K, V> extends LinkedHashMap<K, V> {
-        private final int maxSize;
+    /**
+     * A bounded cache from payload digests to the capture they were first seen in. To keep tens of millions of entries
+     * compact, digests are held in a {@link DigestTable} and each capture is serialized into a shared byte arena
+     * rather than kept as objects.
+     * <p>
+     * Eviction approximates LRU with two generations: new entries go into the current generation and when it fills
+     * up it replaces the previous one, which is discarded. An entry found in the previous generation is copied
+     * forward into the current one.
+     */
+    private static class DigestCache {
+        private final int generationSize;
+        private Generation current = new Generation();
+        private Generation previous;
 
-        public LruCache(int maxSize) {
-            super(maxSize, 0.75f, true);
-            this.maxSize = maxSize;
+        DigestCache(int maxSize) {
+            this.generationSize = Math.max(1, (maxSize + 1) / 2);
         }
 
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return size() > maxSize;
+        synchronized CacheValue get(DigestKey digest) {
+            CacheValue value = current.get(digest);
+            if (value == null && previous != null) {
+                value = previous.get(digest);
+                if (value != null) put(digest, value);
+            }
+            return value;
+        }
+
+        synchronized void put(DigestKey digest, CacheValue value) {
+            if (current.table.size() >= generationSize) {
+                previous = current;
+                current = new Generation();
+            }
+            current.put(digest, value);
+        }
+    }
+
+    private static class Generation {
+        private static final int MIN_CHUNK_SIZE = 4096;
+        private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+        final DigestTable table = new DigestTable();
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+
+        CacheValue get(DigestKey digest) {
+            int index = table.indexOf(digest);
+            if (index < 0) return null;
+            long address = table.longValue(index);
+            ByteBuffer buffer = chunks.get((int) (address >>> 32)).duplicate();
+            buffer.position((int) address).limit((int) address + table.intValue(index));
+            Instant date = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+            String id = getString(buffer);
+            String targetUri = getString(buffer);
+            return new CacheValue(id == null ? null : URI.create(id), targetUri, date);
+        }
+
+        void put(DigestKey digest, CacheValue value) {
+            byte[] id = value.id == null ? null : value.id.toString().getBytes(UTF_8);
+            byte[] targetUri = value.targetUri.getBytes(UTF_8);
+            int length = 8 + 4 + 4 + (id == null ? 0 : id.length) + 4 + targetUri.length;
+            ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (chunk == null || chunk.remaining() < length) {
+                int size = Math.max(length, Math.min(MAX_CHUNK_SIZE, MIN_CHUNK_SIZE << Math.min(chunks.size(), 8)));
+                chunk = ByteBuffer.allocate(size);
+                chunks.add(chunk);
+            }
+            long address = (long) (chunks.size() - 1) << 32 | chunk.position();
+            chunk.putLong(value.date.getEpochSecond());
+            chunk.putInt(value.date.getNano());
+            putString(chunk, id);
+            putString(chunk, targetUri);
+            table.put(digest, address, length);
+        }
+
+        private static void putString(ByteBuffer buffer, byte[] bytes) {
+            if (bytes == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        private static String getString(ByteBuffer buffer) {
+            int length = buffer.getInt();
+            if (length < 0) return null;
+            String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+            buffer.position(buffer.position() + length);
+            return s;
         }
     }
 
@@ -180,8 +256,14 @@ public class DedupeTool {
         WarcResponse response = (WarcResponse) record;
         WarcPayload payload = response.payload().orElse(null);
         if (payload == null || payload.body().size() < minimumSize) return null;
-        WarcDigest payloadDigest = response.payloadDigest().orElse(null);
-        if (payloadDigest == null) return null;
+        String payloadDigestHeader = response.headers().sole("WARC-Payload-Digest").orElse(null);
+        if (payloadDigestHeader == null) return null;
+        DigestKey payloadDigest;
+        try {
+            payloadDigest = new DigestKey(payloadDigestHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
 
         // if we have the payload digest in the cache, return a revisit pointing to it
         if (digestCache != null) {
@@ -193,7 +275,7 @@ public class DedupeTool {
 
         // now check the CDX server
         if (cdxServer != null) {
-            CdxRecord match = findMatchingCdxRecord(response, payloadDigest.base32());
+            CdxRecord match = findMatchingCdxRecord(response, payloadDigest.toWarcDigest().base32());
             if (match != null) {
                 if (digestCache != null) {
                     digestCache.put(payloadDigest, new CacheValue(null, match.target(), match.date()));
@@ -340,7 +422,7 @@ public class DedupeTool {
     }
 
     public void setCacheSize(int cacheSize) {
-        digestCache = cacheSize > 0 ? Collections.synchronizedMap(new LruCache<>(cacheSize)) : null;
+        digestCache = cacheSize > 0 ? new DigestCache(cacheSize) : null;
     }
 
     public void setMinimumSize(long minimumSize) {
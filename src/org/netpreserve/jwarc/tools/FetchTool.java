@@ -10,6 +10,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FetchTool {
     public static void main(String[] args) throws IOException, URISyntaxException {
@@ -25,6 +26,9 @@ public class FetchTool {
                     System.out.println();
                     System.out.println("Options:");
                     System.out.println("  -A, --user-agent STRING    Sets the User-Agent header");
+                    System.out.println("  -j, --concurrency N        Fetch up to N URLs at once (default 8)");
+                    System.out.println("      --per-host N           Fetch up to N URLs from the same host at once (default 2)");
+                    System.out.println("      --delay MILLIS         Wait MILLIS between starting fetches from the same host");
                     System.out.println("      --read-timeout MILLIS  Sets the socket read timeout");
                     System.out.println("      --max-length BYTES     Truncate response after BYTES received");
                     System.out.println("      --max-time MILLIS      Truncate response after MILLIS elapsed");
@@ -36,6 +40,16 @@ public class FetchTool {
                 case "--user-agent":
                     options.userAgent(args[++i]);
                     break;
+                case "-j":
+                case "--concurrency":
+                    options.concurrency(Integer.parseInt(args[++i]));
+                    break;
+                case "--per-host":
+                    options.perHostConcurrency(Integer.parseInt(args[++i]));
+                    break;
+                case "--delay":
+                    options.perHostDelay(Long.parseLong(args[++i]));
+                    break;
                 case "--read-timeout":
                     options.readTimeout(Integer.parseInt(args[++i]));
                     break;
@@ -61,6 +75,7 @@ public class FetchTool {
             System.err.println("No URLs specified. Try: jwarc fetch --help");
             System.exit(1);
         }
+        AtomicBoolean failed = new AtomicBoolean();
         try (WarcWriter writer = outputFile == null ? new WarcWriter(System.out) : new WarcWriter(outputFile)) {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 try {
@@ -70,9 +85,13 @@ public class FetchTool {
                     e.printStackTrace();
                 }
             }, "FetchToolShutdownHook"));
-            for (URI url : urls) {
-                writer.fetch(url, options);
-            }
+            writer.fetchAll(urls, options).forEach(result -> {
+                if (result.exception() != null) {
+                    System.err.println("Error fetching " + result.uri() + ": " + result.exception());
+                    failed.set(true);
+                }
+            });
         }
+        if (failed.get()) System.exit(1);
     }
 }
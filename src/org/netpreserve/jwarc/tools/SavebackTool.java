@@ -8,16 +8,12 @@ import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.nio.channels.Channels;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.nio.file.StandardOpenOption.*;
 import static java.time.temporal.ChronoUnit.SECONDS;
 
 public class SavebackTool {
@@ -82,11 +78,10 @@ public class SavebackTool {
     }
 
     private void process(String waybackUrl, WarcWriter warcWriter) throws IOException {
-        Path temp = Files.createTempFile("jwarc-saveback", ".tmp");
         Instant now = Instant.now();
         HttpURLConnection connection = (HttpURLConnection) new URL(waybackUrl).openConnection();
         try (InputStream bodyStream = connection.getInputStream();
-             SeekableByteChannel channel = Files.newByteChannel(temp, DELETE_ON_CLOSE, WRITE, READ, TRUNCATE_EXISTING)) {
+             SpillBuffer channel = new SpillBuffer(SpillBuffer.DEFAULT_THRESHOLD, "jwarc-saveback")) {
             IOUtils.copy(bodyStream, Channels.newOutputStream(channel));
             channel.position(0);
             long bodyLength = channel.size();
@@ -115,13 +115,15 @@ public class StatsTool {
             }
         }
 
+        List<Path> warcFiles = new ArrayList<>();
         for (Path file : files) {
             if (file.getFileName().toString().endsWith(".cdx")) {
                 statsTool.loadCdxFile(file);
             } else {
-                statsTool.loadWarcFile(file);
+                warcFiles.add(file);
             }
         }
+        statsTool.loadWarcFiles(warcFiles);
         statsTool.print(sizeFormatter);
     }
 
@@ -139,20 +141,24 @@ public class StatsTool {
         }
     }
 
-    private void loadWarcFile(Path path) throws IOException {
-        try (WarcReader reader = new WarcReader(path)) {
-            WarcRecord next = reader.next().orElse(null);
-            while (next != null) {
-                long position = reader.position();
-                WarcRecord record = next;
-                if (record instanceof WarcCaptureRecord) {
-                    // ensure http headers are parsed before moving to the next record
-                    ((WarcCaptureRecord) record).payload();
-                }
-                next = reader.next().orElse(null);
-                long length = reader.position() - position;
-                for (Table table : tables) {
-                    table.add(record, length);
+    private void loadWarcFiles(List<Path> paths) throws IOException {
+        try (WarcCollectionReader warcs = new WarcCollectionReader(paths)) {
+            Optional<WarcReader> nextReader;
+            while ((nextReader = warcs.nextReader()).isPresent()) {
+                WarcReader reader = nextReader.get();
+                WarcRecord next = reader.next().orElse(null);
+                while (next != null) {
+                    long position = reader.position();
+                    WarcRecord record = next;
+                    if (record instanceof WarcCaptureRecord) {
+                        // ensure http headers are parsed before moving to the next record
+                        ((WarcCaptureRecord) record).payload();
+                    }
+                    next = reader.next().orElse(null);
+                    long length = reader.position() - position;
+                    for (Table table : tables) {
+                        table.add(record, length);
+                    }
                 }
             }
         }
@@ -12,7 +12,6 @@ import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.DigestException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
@@ -121,11 +120,10 @@ public class ValidateTool {
 
     private static void validateDigest(MessageBody body, WarcDigest digest, AtomicLong consumedBytes)
             throws IOException, NoSuchAlgorithmException, DigestException {
-        MessageDigest md = digest.getDigester();
-        long size = readBody(body, b -> md.update(b));
+        MultiDigest md = new MultiDigest(digest.algorithm());
+        long size = readBody(body, md::update);
         consumedBytes.set(size);
-        WarcDigest dig = new WarcDigest(md);
-        validateDigest(digest, dig, size);
+        validateDigest(digest, md.digests().get(0), size);
     }
 
     private boolean validateCapture(WarcRecord record) throws IOException {
@@ -111,6 +111,21 @@ public class GunzipChannelTest {
         checkExternalBuffer(buffer);
     }
 
+    @Test
+    public void externalBufferDirect() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+        buffer.flip();
+        ByteArrayOutputStream baos = getHelloWorldGzipByteStream();
+        ReadableByteChannel input = Channels.newChannel(new ByteArrayInputStream(baos.toByteArray()));
+        GunzipChannel channel = new GunzipChannel(input, buffer);
+        ByteBuffer output = ByteBuffer.allocateDirect(20);
+        int n = channel.read(output);
+        channel.close();
+        assertEquals(11, n);
+        output.flip();
+        assertEquals("Hello world", StandardCharsets.US_ASCII.decode(output).toString());
+    }
+
     @Ignore("User must ensure buffer is in read state")
     @Test
     public void externalBufferNoReadState() throws IOException, URISyntaxException {
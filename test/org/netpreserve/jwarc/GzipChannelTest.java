@@ -117,4 +117,21 @@ public class GzipChannelTest {
         GzipChannel channel = new GzipChannel(Channels.newChannel(baos), ByteBuffer.allocate(1024).asReadOnlyBuffer());
         channel.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDirectBuffers() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GzipChannel channel = new GzipChannel(Channels.newChannel(baos), ByteBuffer.allocateDirect(1024));
+        ByteBuffer src = ByteBuffer.allocateDirect(textBytes.length);
+        src.put(textBytes);
+        src.flip();
+        assertEquals(textBytes.length, channel.write(src));
+        assertEquals(0, src.remaining());
+        channel.close();
+
+        GZIPInputStream gzis = new GZIPInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        byte[] inBytes = new byte[8192];
+        int n = gzis.read(inBytes);
+        assertEquals(text, new String(inBytes, 0, n, StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class HeaderEncoderTest {
+    private static final String[] VALUES = {"plain ascii", "café", "日本語", "emoji 😀",
+            "unpaired \ud83d surrogate", "trailing \ud83d", "Ā beyond latin-1"};
+
+    @Test
+    public void shouldMatchStringEncoding() {
+        HeaderEncoder encoder = new HeaderEncoder();
+        for (String value : VALUES) {
+            WarcResource warc = new WarcResource.Builder(URI.create("http://example.org/"))
+                    .addHeader("X-Test", value).build();
+            assertEncoded(encoder, warc, StandardCharsets.UTF_8);
+
+            HttpResponse http = new HttpResponse.Builder(200, "OK").addHeader("X-Test", value).build();
+            assertEncoded(encoder, http, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static void assertEncoded(HeaderEncoder encoder, Message message, Charset charset) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            message.serializeHeaderTo(sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        ByteBuffer encoded = encoder.encode(message);
+        byte[] actual = new byte[encoded.remaining()];
+        encoded.get(actual);
+        assertArrayEquals(sb.toString().getBytes(charset), actual);
+    }
+}
@@ -2,10 +2,11 @@ package org.netpreserve.jwarc;
 
 import org.junit.Test;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -26,6 +27,36 @@ public class MessageHeadersTest {
                 .contains("Transfer-Encoding", "Chunked"));
     }
 
+    @Test
+    public void testParsedHeaders() throws IOException {
+        MessageHeaders headers = MessageHeaders.parse(Channels.newChannel(new ByteArrayInputStream((
+                "WARC-Type: response\r\n" +
+                "x-custom: one\r\n" +
+                "warc-concurrent-to: <urn:a>\r\n" +
+                "WARC-Target-URI: http://example.org/\u00e9\r\n" +
+                "X-Custom: two\r\n" +
+                "WARC-Concurrent-To: <urn:b>\r\n" +
+                "\r\n").getBytes(StandardCharsets.UTF_8))));
+        assertEquals(Optional.of("response"), headers.sole("WARC-Type"));
+        assertEquals(Optional.of("response"), headers.sole("warc-type"));
+        assertEquals(Optional.of("http://example.org/\u00e9"), headers.sole("WARC-Target-URI"));
+        assertEquals(Arrays.asList("<urn:a>", "<urn:b>"), headers.all("WARC-Concurrent-To"));
+        assertEquals(Arrays.asList("one", "two"), headers.all("X-CUSTOM"));
+        assertEquals(Optional.of("one"), headers.first("x-custom"));
+        assertEquals(Optional.empty(), headers.first("Content-Length"));
+        assertEquals(Collections.emptyList(), headers.all("Missing"));
+        assertTrue(headers.contains("warc-type", "RESPONSE"));
+        try {
+            headers.sole("X-Custom");
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("warc-concurrent-to", "WARC-Target-URI", "WARC-Type", "x-custom"),
+                new ArrayList<>(headers.map().keySet()));
+        assertEquals(Arrays.asList("one", "two"), headers.map().get("X-Custom"));
+    }
+
     private static MessageHeaders headers(String... headers) {
         Map<String,List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
         for (int i = 0; i < headers.length; i += 2) {
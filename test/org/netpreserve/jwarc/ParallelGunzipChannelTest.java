@@ -0,0 +1,131 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.*;
+
+public class ParallelGunzipChannelTest {
+    private static Path warc;
+
+    @BeforeClass
+    public static void createWarc() throws IOException {
+        warc = Files.createTempFile("jwarc", ".warc.gz");
+        Random random = new Random(0);
+        try (WarcWriter writer = new WarcWriter(FileChannel.open(warc, WRITE),
+                WarcCompression.GZIP)) {
+            for (int i = 0; i < 50; i++) {
+                byte[] payload;
+                if (i % 7 == 3) {
+                    // a gzipped payload of random data is stored uncompressed by the deflater so its gzip header
+                    // shows up verbatim in the middle of the member
+                    byte[] noise = new byte[2000];
+                    random.nextBytes(noise);
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gzos = new GZIPOutputStream(baos)) {
+                        gzos.write(noise);
+                    }
+                    payload = baos.toByteArray();
+                } else {
+                    payload = ("record " + i).getBytes(StandardCharsets.UTF_8);
+                }
+                writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                        .body(MediaType.OCTET_STREAM, payload).build());
+            }
+        }
+    }
+
+    @AfterClass
+    public static void deleteWarc() throws IOException {
+        Files.deleteIfExists(warc);
+    }
+
+    @Test
+    public void shouldMatchSequentialInflation() throws IOException {
+        for (int chunkSize : new int[]{1, 97, 1000, 1024 * 1024}) {
+            try (FileChannel sequentialFile = FileChannel.open(warc);
+                 FileChannel parallelFile = FileChannel.open(warc)) {
+                GunzipChannel sequential = new GunzipChannel(sequentialFile, (ByteBuffer) ByteBuffer.allocate(8192).flip());
+                ParallelGunzipChannel parallel = new ParallelGunzipChannel(parallelFile, 4, chunkSize);
+                assertEquals(readMembers(sequential), readMembers(parallel));
+                parallel.close();
+            }
+        }
+    }
+
+    @Test
+    public void shouldStreamMembersTooLargeToBuffer() throws IOException {
+        try (FileChannel sequentialFile = FileChannel.open(warc);
+             FileChannel parallelFile = FileChannel.open(warc)) {
+            GunzipChannel sequential = new GunzipChannel(sequentialFile, (ByteBuffer) ByteBuffer.allocate(8192).flip());
+            ParallelGunzipChannel parallel = new ParallelGunzipChannel(parallelFile, 4, 1000);
+            parallel.maxMemberSize = 1000; // smaller than the records with gzipped payloads
+            assertEquals(readMembers(sequential), readMembers(parallel));
+            parallel.close();
+        }
+    }
+
+    private static List<String> readMembers(ReadableByteChannel channel) throws IOException {
+        List<String> members = new ArrayList<>();
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(300);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            member.write(buffer.array(), 0, buffer.limit());
+            buffer.clear();
+            long inputPosition = ((DecompressingChannel) channel).inputPosition();
+            boolean atBoundary = channel instanceof GunzipChannel ? ((GunzipChannel) channel).atMemberBoundary() :
+                    ((ParallelGunzipChannel) channel).atMemberBoundary();
+            if (atBoundary) {
+                members.add(inputPosition + ":" + new String(member.toByteArray(), StandardCharsets.ISO_8859_1));
+                member.reset();
+            }
+        }
+        return members;
+    }
+
+    @Test
+    public void readerShouldReturnSamePositions() throws IOException {
+        List<String> expected = new ArrayList<>();
+        try (WarcReader reader = new WarcReader(warc)) {
+            for (WarcRecord record : reader) {
+                expected.add(reader.position() + " " + record.id());
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        try (WarcReader reader = new WarcReader(warc, 4)) {
+            assertTrue(reader.channel() instanceof ParallelGunzipChannel);
+            for (WarcRecord record : reader) {
+                actual.add(reader.position() + " " + record.id());
+            }
+            assertEquals(0, reader.misalignedRecords());
+
+            String[] third = expected.get(2).split(" ");
+            reader.position(Long.parseLong(third[0]));
+            assertEquals(third[1], reader.next().get().id().toString());
+        }
+        assertEquals(50, expected.size());
+        assertEquals(expected, actual);
+    }
+}
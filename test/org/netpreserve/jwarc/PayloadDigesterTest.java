@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.*;
+
+public class PayloadDigesterTest {
+    @Test
+    public void shouldDigestPayloadsWithEachFraming() throws Exception {
+        assertDigest("hello world", "HTTP/1.1 200 OK\r\nContent-Length: 11\r\n\r\nhello world");
+        assertDigest("hello", "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello world");
+        assertDigest("hello world", "HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\n\r\nhello world");
+        assertDigest("hello world", "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                "5;name=value\r\nhello\r\n6\r\n world\r\n0\r\nExpires: never\r\n\r\n");
+        assertDigest("garbage\r\n", "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\ngarbage\r\n");
+        assertDigest(null, "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhel");
+        assertDigest(null, "HTTP/1.1 204 No Content\r\n\r\n");
+        assertDigest(null, "HTTP/1.1 200 OK\r\nContent-Le");
+    }
+
+    private static void assertDigest(String expectedPayload, String response) throws NoSuchAlgorithmException {
+        byte[] bytes = response.getBytes(ISO_8859_1);
+        for (int step : new int[]{1, 3, bytes.length}) {
+            PayloadDigester digester = new PayloadDigester(MessageDigest.getInstance("SHA-1"));
+            for (int i = 0; i < bytes.length; i += step) {
+                digester.update(bytes, i, Math.min(step, bytes.length - i));
+            }
+            MessageDigest digest = digester.digest();
+            if (expectedPayload == null) {
+                assertNull(digest);
+            } else {
+                assertNotNull(response, digest);
+                byte[] expected = MessageDigest.getInstance("SHA-1").digest(expectedPayload.getBytes(ISO_8859_1));
+                assertArrayEquals(response, expected, digest.digest());
+            }
+        }
+    }
+}
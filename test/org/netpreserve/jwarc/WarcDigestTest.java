@@ -36,6 +36,34 @@ public class WarcDigestTest {
         assertEquals("Kq5sNclPz7QV2+lfQIuc6R7oRu0=", digest.base64());
     }
 
+    @Test
+    public void testXxh64() throws NoSuchAlgorithmException {
+        String[][] vectors = {
+                {"", "ef46db3751d8e999"},
+                {"abc", "44bc2cf5ad770999"},
+                {"Nobody inspects the spammish repetition", "fbcea83c8a378bf1"},
+        };
+        for (String[] vector : vectors) {
+            byte[] input = vector[0].getBytes();
+            MessageDigest md = WarcDigest.getDigester("xxh64");
+            md.update(input);
+            WarcDigest digest = new WarcDigest(md);
+            assertEquals("xxh64", digest.algorithm());
+            assertEquals(vector[1], digest.hex());
+
+            // byte at a time and across the 32 byte stripes
+            for (byte b : input) md.update(b);
+            assertEquals(vector[1], new WarcDigest(md).hex());
+        }
+        byte[] input = new byte[1000];
+        for (int i = 0; i < input.length; i++) input[i] = (byte) (i * 31);
+        MessageDigest whole = WarcDigest.getDigester("xxh64");
+        whole.update(input);
+        MessageDigest pieces = WarcDigest.getDigester("xxh64");
+        for (int i = 0; i < input.length; i += 13) pieces.update(input, i, Math.min(13, input.length - i));
+        assertArrayEquals(whole.digest(), pieces.digest());
+    }
+
     @Test
     public void testBase32()  {
         assertEquals("AELZ2347", WarcDigest.base32Encode(WarcDigest.base32Decode("aelz2347")));
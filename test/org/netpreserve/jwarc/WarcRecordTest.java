@@ -2,9 +2,11 @@ package org.netpreserve.jwarc;
 
 import org.junit.Test;
 
+import java.net.URI;
 import java.time.Instant;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class WarcRecordTest {
     @Test
@@ -16,6 +18,18 @@ public class WarcRecordTest {
         assertEquals(466148000, warc11Record.date().getNano());
     }
 
+    @Test
+    public void typedAccessorsShouldBeDecodedOnce() {
+        WarcResource record = new WarcResource.Builder(URI.create("http://example.org/"))
+                .concurrentTo(URI.create("urn:uuid:00000000-0000-0000-0000-000000000000"))
+                .body(MediaType.HTML, new byte[0]).build();
+        assertSame(record.id(), record.id());
+        assertSame(record.date(), record.date());
+        assertSame(record.contentType(), record.contentType());
+        assertSame(record.concurrentTo(), record.concurrentTo());
+        assertEquals(URI.create("urn:uuid:00000000-0000-0000-0000-000000000000"), record.concurrentTo().get(0));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void invalidVersionShouldThrow() {
         new Warcinfo.Builder().version(MessageVersion.HTTP_1_0);
@@ -0,0 +1,113 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.apitests;
+
+import org.junit.Test;
+import org.netpreserve.jwarc.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.*;
+
+public class AsyncWarcReaderTest {
+    @Test
+    public void shouldReadSameRecordsAsWarcReader() throws Exception {
+        for (WarcCompression compression : new WarcCompression[]{WarcCompression.NONE, WarcCompression.GZIP}) {
+            Path temp = Files.createTempFile("jwarc", ".warc");
+            try {
+                Random random = new Random(0);
+                try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE), compression)) {
+                    for (int i = 0; i < 20; i++) {
+                        byte[] payload = new byte[i * 10000];
+                        random.nextBytes(payload);
+                        writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                                .body(MediaType.OCTET_STREAM, payload).build());
+                    }
+                    writer.write(new WarcRequest.Builder(URI.create("http://example.org/"))
+                            .body(new HttpRequest.Builder("GET", "/").build()).build());
+                }
+
+                Map<Long, String> expected = new LinkedHashMap<>();
+                try (WarcReader reader = new WarcReader(temp)) {
+                    for (WarcRecord record : reader) {
+                        expected.put(reader.position(), describe(record));
+                    }
+                }
+                assertEquals(21, expected.size());
+
+                Map<Long, String> sequential = new LinkedHashMap<>();
+                try (AsyncWarcReader reader = new AsyncWarcReader(temp)) {
+                    reader.forEach(record -> {
+                        sequential.put(reader.position(), describe(record));
+                        return CompletableFuture.completedFuture(null);
+                    }).get();
+                }
+                assertEquals(compression.toString(), expected, sequential);
+
+                Map<Long, CompletableFuture<WarcRecord>> futures = new LinkedHashMap<>();
+                try (AsyncWarcReader reader = new AsyncWarcReader(temp)) {
+                    for (long position : expected.keySet()) {
+                        futures.put(position, reader.read(position));
+                    }
+                    for (Map.Entry<Long, CompletableFuture<WarcRecord>> entry : futures.entrySet()) {
+                        assertEquals(expected.get(entry.getKey()), describe(entry.getValue().get()));
+                    }
+                    try {
+                        reader.read(Files.size(temp)).get();
+                        fail("expected EOFException");
+                    } catch (ExecutionException e) {
+                        assertTrue(e.getCause() instanceof EOFException);
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadGzipMembersWithOptionalHeaderFields() throws Exception {
+        for (String name : new String[]{"cc.warc.gz", "gzip_extra_sl.warc.gz"}) {
+            Path path = Paths.get(getClass().getClassLoader().getResource("org/netpreserve/jwarc/" + name).toURI());
+            List<String> expected = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(path)) {
+                for (WarcRecord record : reader) {
+                    expected.add(reader.position() + " " + describe(record));
+                }
+            }
+            List<String> actual = new ArrayList<>();
+            try (AsyncWarcReader reader = new AsyncWarcReader(path)) {
+                for (Optional<WarcRecord> record = reader.next().get(); record.isPresent();
+                     record = reader.next().get()) {
+                    actual.add(reader.position() + " " + describe(record.get()));
+                }
+            }
+            assertEquals(name, expected, actual);
+        }
+    }
+
+    private static String describe(WarcRecord record) {
+        try {
+            byte[] body = IOUtils.readNBytes(record.body().stream(), 1024 * 1024);
+            return record.type() + " " + record.id() + " " + record.headers() + " " +
+                   Base64.getEncoder().encodeToString(Arrays.copyOf(body, Math.min(body.length, 100))) + " " +
+                   body.length + " " + Arrays.hashCode(body);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
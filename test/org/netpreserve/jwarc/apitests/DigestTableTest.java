@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.apitests;
+
+import org.junit.Test;
+import org.netpreserve.jwarc.DigestKey;
+import org.netpreserve.jwarc.DigestTable;
+import org.netpreserve.jwarc.WarcDigest;
+
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class DigestTableTest {
+    @Test
+    public void keysShouldDecodeAllEncodings() throws Exception {
+        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        DigestKey key = new DigestKey(sha1);
+        WarcDigest digest = new WarcDigest("sha1", key.bytes());
+        assertEquals("sha1:3I42H3S6NNFQ2MSVX7XZKYAYSCX5QBYJ", key.toString());
+        assertEquals(key, new DigestKey("sha1:3I42H3S6NNFQ2MSVX7XZKYAYSCX5QBYJ"));
+        assertEquals(key, new DigestKey("SHA-1:" + digest.hex()));
+        assertEquals(key, new DigestKey("sha1:" + digest.base64()));
+        assertEquals(key, new DigestKey(digest));
+        assertEquals(key.hashCode(), new DigestKey("sha1:3I42H3S6NNFQ2MSVX7XZKYAYSCX5QBYJ").hashCode());
+        assertEquals(digest, key.toWarcDigest());
+        assertEquals(20, key.length());
+        assertNotEquals(key, new DigestKey("md5", key.bytes()));
+    }
+
+    @Test
+    public void keysShouldDecodeShortDigestsInBase64() {
+        Random random = new Random(0);
+        for (String algorithm : new String[]{"xxh64", "md5", "sha256"}) {
+            byte[] bytes = new byte[algorithm.equals("xxh64") ? 8 : algorithm.equals("md5") ? 16 : 32];
+            random.nextBytes(bytes);
+            DigestKey key = new DigestKey(algorithm, bytes);
+            assertEquals(key, new DigestKey(key.toString()));
+            assertEquals(key, new DigestKey(algorithm + ":" + Base64.getEncoder().encodeToString(bytes)));
+            assertEquals(key, new DigestKey(algorithm + ":" +
+                                            Base64.getEncoder().withoutPadding().encodeToString(bytes)));
+        }
+    }
+
+    @Test
+    public void tableShouldBehaveLikeMap() throws Exception {
+        DigestTable table = new DigestTable(4);
+        Map<DigestKey, Long> expected = new HashMap<>();
+        Random random = new Random(0);
+        String[] algorithms = {"sha1", "md5", "sha256", "xxh64"};
+        for (int i = 0; i < 5000; i++) {
+            String algorithm = algorithms[i % algorithms.length];
+            MessageDigest digester = WarcDigest.getDigester(algorithm);
+            digester.update(Integer.toString(random.nextInt(3000)).getBytes(UTF_8));
+            DigestKey key = new DigestKey(digester);
+            if (i % 7 == 0) {
+                assertEquals(expected.remove(key) != null, table.remove(key));
+            } else {
+                assertEquals(!expected.containsKey(key), table.put(key, i, -i));
+                expected.put(key, (long) i);
+            }
+            assertEquals(expected.size(), table.size());
+        }
+        for (Map.Entry<DigestKey, Long> entry : expected.entrySet()) {
+            int index = table.indexOf(entry.getKey());
+            assertTrue(index >= 0);
+            assertEquals((long) entry.getValue(), table.longValue(index));
+            assertEquals((int) -entry.getValue(), table.intValue(index));
+        }
+        assertEquals(-1, table.indexOf(new DigestKey("sha512", new byte[64])));
+        assertFalse(table.containsKey(new DigestKey("md5", new byte[16])));
+
+        table.clear();
+        assertTrue(table.isEmpty());
+        assertEquals(-1, table.indexOf(expected.keySet().iterator().next()));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.apitests;
+
+import org.junit.Test;
+import org.netpreserve.jwarc.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class MultiDigestTest {
+    @Test
+    public void shouldMatchIndividualDigests() throws Exception {
+        byte[] data = "hello world".getBytes(UTF_8);
+        MultiDigest multi = new MultiDigest("sha1", "SHA-256", "md5", "sha256");
+        multi.update(data, 0, 5);
+        ByteBuffer direct = ByteBuffer.allocateDirect(6);
+        direct.put(data, 5, 6).flip();
+        multi.update(direct);
+        assertFalse(direct.hasRemaining());
+
+        List<WarcDigest> digests = multi.digests();
+        assertEquals(3, digests.size());
+        for (String algorithm : new String[]{"SHA-1", "SHA-256", "MD5"}) {
+            MessageDigest md = MessageDigest.getInstance(algorithm);
+            md.update(data);
+            WarcDigest expected = new WarcDigest(md);
+            assertEquals(Optional.of(expected), multi.digest(expected.algorithm()));
+        }
+        assertSame(digests, multi.digests());
+    }
+
+    @Test
+    public void readerShouldCalculateAdditionalBlockDigests() throws Exception {
+        byte[] payload = "hello world".getBytes(UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (WarcWriter writer = new WarcWriter(Channels.newChannel(out))) {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(payload);
+            writer.write(new WarcResource.Builder(URI.create("http://example.org/"))
+                    .body(MediaType.PLAIN_TEXT, payload)
+                    .blockDigest(new WarcDigest(sha1))
+                    .build());
+        }
+
+        try (WarcReader reader = new WarcReader(new ByteArrayInputStream(out.toByteArray()))) {
+            reader.calculateBlockDigest("sha256", "xxh64");
+            WarcRecord record = reader.next().orElseThrow(AssertionError::new);
+            assertEquals(record.blockDigest(), record.calculatedBlockDigest());
+            List<WarcDigest> digests = record.calculatedBlockDigests();
+            assertEquals(3, digests.size());
+            assertEquals("sha1", digests.get(0).algorithm());
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(payload);
+            assertEquals(new WarcDigest(sha256), digests.get(1));
+            assertEquals("xxh64", digests.get(2).algorithm());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.apitests;
+
+import org.junit.Test;
+import org.netpreserve.jwarc.SpillBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpillBufferTest {
+    @Test
+    public void shouldStayInMemoryUntilThreshold() throws IOException {
+        byte[] data = new byte[200_000];
+        new Random(0).nextBytes(data);
+        try (SpillBuffer buffer = new SpillBuffer(150_000, "jwarc-test")) {
+            for (int i = 0; i < data.length; i += 7000) {
+                buffer.write(ByteBuffer.wrap(data, i, Math.min(7000, data.length - i)));
+                assertEquals(i + 7000 > 150_000, buffer.isSpilled());
+            }
+            assertEquals(data.length, buffer.size());
+            assertArrayEquals(data, readAll(buffer.position(0)));
+        }
+    }
+
+    @Test
+    public void shouldSeekTruncateAndZeroGaps() throws IOException {
+        byte[] noise = new byte[100_000];
+        Arrays.fill(noise, (byte) 'x');
+        try (SpillBuffer buffer = new SpillBuffer()) {
+            buffer.write(ByteBuffer.wrap(noise));
+        } // leaves dirty chunks in the pool
+
+        try (SpillBuffer buffer = new SpillBuffer()) {
+            buffer.write(ByteBuffer.wrap("hello world".getBytes()));
+            buffer.position(6).write(ByteBuffer.wrap("there".getBytes()));
+            assertEquals("hello there", new String(readAll(buffer.position(0))));
+            buffer.truncate(5);
+            assertEquals(5, buffer.position());
+            buffer.position(70_000).write(ByteBuffer.wrap("!".getBytes()));
+            byte[] bytes = readAll(buffer.position(0));
+            assertEquals(70_001, bytes.length);
+            assertEquals("hello", new String(bytes, 0, 5));
+            for (int i = 5; i < 70_000; i++) {
+                assertEquals(0, bytes[i]);
+            }
+            assertEquals(-1, buffer.read(ByteBuffer.allocate(1)));
+            assertFalse(buffer.isSpilled());
+        }
+    }
+
+    private static byte[] readAll(SpillBuffer buffer) throws IOException {
+        ByteBuffer dst = ByteBuffer.allocate((int) (buffer.size() - buffer.position()));
+        while (dst.hasRemaining() && buffer.read(dst) >= 0) {
+            // keep reading
+        }
+        return dst.array();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.apitests;
+
+import org.junit.Test;
+import org.netpreserve.jwarc.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.*;
+
+public class WarcCollectionReaderTest {
+    @Test
+    public void shouldReadSameRecordsAsWarcReader() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        try {
+            Random random = new Random(0);
+            WarcCompression[] compressions = {WarcCompression.GZIP, WarcCompression.NONE, WarcCompression.GZIP};
+            for (WarcCompression compression : compressions) {
+                Path temp = Files.createTempFile("jwarc", ".warc");
+                paths.add(temp);
+                try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE), compression)) {
+                    for (int i = 0; i < 10; i++) {
+                        byte[] payload = new byte[i * 3000];
+                        random.nextBytes(payload);
+                        writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                                .body(MediaType.OCTET_STREAM, payload).build());
+                    }
+                }
+            }
+            paths.add(Paths.get("test-resources/org/netpreserve/jwarc/cc.warc.gz"));
+
+            List<String> expected = new ArrayList<>();
+            for (Path path : paths) {
+                try (WarcReader reader = new WarcReader(path)) {
+                    for (WarcRecord record : reader) {
+                        expected.add(path + " " + reader.position() + " " + record.id());
+                    }
+                }
+            }
+
+            // a small buffer size so files span many buffers
+            List<String> actual = new ArrayList<>();
+            try (WarcCollectionReader reader = new WarcCollectionReader(paths, 4096)) {
+                for (WarcRecord record : reader) {
+                    actual.add(reader.path() + " " + reader.position() + " " + record.id());
+                }
+            }
+            assertEquals(expected, actual);
+
+            // abandoning files part way through should not disturb the following files
+            try (WarcCollectionReader collection = new WarcCollectionReader(paths, 4096)) {
+                for (Path path : paths) {
+                    WarcReader reader = collection.nextReader().orElseThrow(AssertionError::new);
+                    assertEquals(path, collection.path());
+                    assertTrue(reader.next().isPresent());
+                }
+                assertFalse(collection.nextReader().isPresent());
+                assertFalse(collection.next().isPresent());
+            }
+        } finally {
+            for (Path path : paths) {
+                if (path.startsWith(System.getProperty("java.io.tmpdir"))) Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void unreadableFilesShouldNotStopLaterFiles() throws IOException {
+        Path missing = Paths.get("test-resources/does-not-exist.warc");
+        Path present = Paths.get("test-resources/org/netpreserve/jwarc/cc.warc.gz");
+        try (WarcCollectionReader collection = new WarcCollectionReader(Arrays.asList(missing, present))) {
+            try {
+                collection.nextReader();
+                fail("expected IOException");
+            } catch (IOException e) {
+                // expected
+            }
+            WarcReader reader = collection.nextReader().orElseThrow(AssertionError::new);
+            assertEquals(present, collection.path());
+            assertTrue(reader.next().isPresent());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void readErrorsShouldNotExhaustBuffers() throws IOException {
+        // on Linux a directory can be opened but fails when read
+        Path directory = Paths.get("test-resources");
+        Path present = Paths.get("test-resources/org/netpreserve/jwarc/cc.warc.gz");
+        try (WarcCollectionReader collection = new WarcCollectionReader(
+                Arrays.asList(directory, directory, directory, present))) {
+            for (int i = 0; i < 3; i++) {
+                try {
+                    collection.nextReader();
+                    fail("expected IOException");
+                } catch (IOException e) {
+                    // expected
+                }
+            }
+            WarcReader reader = collection.nextReader().orElseThrow(AssertionError::new);
+            assertEquals(present, collection.path());
+            assertTrue(reader.next().isPresent());
+        }
+    }
+}
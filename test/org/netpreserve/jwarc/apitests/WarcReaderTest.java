@@ -10,25 +10,35 @@ import org.junit.Test;
 import org.netpreserve.jwarc.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 import java.util.zip.GZIPOutputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.*;
 
 public class WarcReaderTest {
@@ -104,6 +114,40 @@ public class WarcReaderTest {
         parseGzippedWithBuffer(buffer);
     }
 
+    @Test
+    public void externalBufferDirect() throws IOException, URISyntaxException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+        buffer.flip();
+        parseGzippedWithBuffer(buffer);
+
+        buffer = ByteBuffer.allocateDirect(8192);
+        buffer.flip();
+        try (WarcReader reader = new WarcReader(Channels.newChannel(
+                new ByteArrayInputStream(readWarcFile("cc.warc.gz"))), buffer)) {
+            WarcRecord record = reader.next().orElseThrow(AssertionError::new);
+            ByteBuffer body = ByteBuffer.allocateDirect(8192);
+            long total = 0;
+            for (int n = record.body().read(body); n >= 0; n = record.body().read(body)) {
+                total += n;
+                body.clear();
+            }
+            assertEquals(record.body().size(), total);
+        }
+
+        buffer = ByteBuffer.allocateDirect(8192);
+        buffer.flip();
+        WarcReader reader = new WarcReader(Channels.newChannel(
+                new ByteArrayInputStream(WarcResponseTest.warc.getBytes(UTF_8))), buffer);
+        WarcResponse response = (WarcResponse) reader.next().orElseThrow(AssertionError::new);
+        assertEquals(200, response.http().status());
+        ByteBuffer body = ByteBuffer.allocateDirect(100000);
+        while (response.http().body().read(body) >= 0) {
+            // keep reading
+        }
+        assertEquals(response.http().body().size(), body.position());
+        reader.close();
+    }
+
     @Ignore("User must ensure buffer is in read state")
     @Test
     public void externalBufferNoReadState() throws IOException, URISyntaxException {
@@ -340,4 +384,289 @@ public class WarcReaderTest {
         }
         assertFalse(reader.next().isPresent());
     }
+
+    @Test
+    public void forRangeShouldYieldEachRecordOnce() throws IOException {
+        for (WarcCompression compression : new WarcCompression[]{WarcCompression.NONE, WarcCompression.GZIP}) {
+            Path temp = Files.createTempFile("jwarc", ".warc");
+            try {
+                try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE), compression)) {
+                    for (int i = 0; i < 20; i++) {
+                        String payload = i % 3 == 0 ? "looks like\nWARC/1.0\r\nbut isn't " + i : "record " + i;
+                        writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                                .body(MediaType.PLAIN_TEXT, payload.getBytes(UTF_8)).build());
+                    }
+                }
+
+                List<String> expected = new ArrayList<>();
+                try (WarcReader reader = new WarcReader(temp)) {
+                    for (WarcRecord record : reader) {
+                        expected.add(reader.position() + " " + record.id());
+                    }
+                }
+                assertEquals(20, expected.size());
+
+                long size = Files.size(temp);
+                for (long splitSize : new long[]{1, 97, 500, size}) {
+                    List<String> actual = new ArrayList<>();
+                    for (long start = 0; start < size; start += splitSize) {
+                        try (WarcReader reader = WarcReader.forRange(FileChannel.open(temp), start,
+                                Math.min(start + splitSize, size))) {
+                            for (WarcRecord record : reader) {
+                                assertTrue(reader.position() >= start);
+                                assertTrue(reader.position() < start + splitSize);
+                                actual.add(reader.position() + " " + record.id());
+                            }
+                        }
+                    }
+                    assertEquals(compression + " split " + splitSize, expected, actual);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    @Test
+    public void forRangeShouldReadZstdWithDictionary() throws IOException {
+        List<WarcRecord> samples = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            samples.add(new WarcResource.Builder(URI.create("http://example.org/sample/" + i))
+                    .body(MediaType.HTML, ("<html><body>Sample page " + i + "</body></html>").getBytes(UTF_8))
+                    .build());
+        }
+        byte[] dictionary = WarcWriter.trainZstdDictionary(samples, 4096);
+        Path temp = Files.createTempFile("jwarc", ".warc.zst");
+        try {
+            try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE), WarcCompression.ZSTD, dictionary)) {
+                for (int i = 0; i < 50; i++) {
+                    writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                            .body(MediaType.HTML, ("<html><body>Page " + i + "</body></html>").getBytes(UTF_8))
+                            .build());
+                }
+            }
+
+            List<String> expected = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(temp)) {
+                for (WarcRecord record : reader) {
+                    expected.add(reader.position() + " " + record.id());
+                }
+            }
+            assertEquals(50, expected.size());
+
+            long size = Files.size(temp);
+            for (long splitSize : new long[]{size / 2 + 1, 500}) {
+                List<String> actual = new ArrayList<>();
+                for (long start = 0; start < size; start += splitSize) {
+                    try (WarcReader reader = WarcReader.forRange(FileChannel.open(temp), start,
+                            Math.min(start + splitSize, size))) {
+                        for (WarcRecord record : reader) {
+                            actual.add(reader.position() + " " + record.id());
+                        }
+                    }
+                }
+                assertEquals("split " + splitSize, expected, actual);
+            }
+
+            try (WarcReader reader = new WarcReader(temp)) {
+                assertEquals(50, reader.records().parallel().count());
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Test
+    public void mappedReaderShouldReportTruncationLikeStreamingReader() throws IOException {
+        Path temp = Files.createTempFile("jwarc", ".warc");
+        try {
+            try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE))) {
+                for (int i = 0; i < 3; i++) {
+                    writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                            .body(MediaType.PLAIN_TEXT, ("record " + i + " with a longer body").getBytes(UTF_8))
+                            .build());
+                }
+            }
+            // cut the last record off part way through its body
+            byte[] data = Files.readAllBytes(temp);
+            Files.write(temp, Arrays.copyOf(data, data.length - 20));
+
+            for (boolean mapped : new boolean[]{false, true}) {
+                int records = 0;
+                try (WarcReader reader = mapped ? WarcReader.mapped(temp) : new WarcReader(temp)) {
+                    for (WarcRecord record : reader) {
+                        IOUtils.readNBytes(record.body().stream(), 8192);
+                        records++;
+                    }
+                    fail("expected EOFException");
+                } catch (EOFException e) {
+                    // expected
+                }
+                assertEquals("mapped " + mapped, 2, records);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Test
+    public void mappedReaderShouldExposeBodiesWithoutCopying() throws IOException, URISyntaxException {
+        Path temp = Files.createTempFile("jwarc", ".warc");
+        try {
+            Files.write(temp, WarcResponseTest.warc.getBytes(UTF_8));
+            try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE, APPEND))) {
+                for (int i = 0; i < 5; i++) {
+                    writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                            .body(MediaType.PLAIN_TEXT, ("record " + i).getBytes(UTF_8)).build());
+                }
+            }
+
+            List<String> expected = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(temp)) {
+                for (WarcRecord record : reader) {
+                    expected.add(reader.position() + " " + record.id() + " " +
+                                 new String(IOUtils.readNBytes(record.body().stream(), 8192), UTF_8));
+                }
+            }
+
+            List<String> actual = new ArrayList<>();
+            try (WarcReader reader = WarcReader.mapped(temp)) {
+                WarcResponse response = (WarcResponse) reader.next().orElseThrow(AssertionError::new);
+                assertEquals(200, response.http().status());
+                reader.position(0);
+                for (WarcRecord record : reader) {
+                    ByteBuffer body = record.body().asByteBuffer().orElseThrow(AssertionError::new);
+                    assertTrue(body.isReadOnly());
+                    byte[] bytes = new byte[body.remaining()];
+                    body.get(bytes);
+                    assertEquals(0, record.body().position());
+                    actual.add(reader.position() + " " + record.id() + " " + new String(bytes, UTF_8));
+                }
+            }
+            assertEquals(6, expected.size());
+            assertEquals(expected, actual);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Test
+    public void reusedRecordsShouldMatchFreshRecords() throws IOException {
+        Path temp = Files.createTempFile("jwarc", ".warc");
+        try {
+            Files.write(temp, (WarcResponseTest.warc + WarcResponseTest.warc).getBytes(UTF_8));
+            try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE, APPEND))) {
+                for (int i = 0; i < 3; i++) {
+                    writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                            .body(MediaType.PLAIN_TEXT, ("record " + i).getBytes(UTF_8)).build());
+                }
+                writer.write(new WarcRequest.Builder(URI.create("http://example.org/"))
+                        .body(new HttpRequest.Builder("GET", "/").addHeader("Host", "example.org").build())
+                        .build());
+            }
+
+            List<String> expected = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(temp)) {
+                for (WarcRecord record : reader) {
+                    expected.add(describe(record));
+                }
+            }
+
+            List<String> actual = new ArrayList<>();
+            List<WarcRecord> records = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(temp)) {
+                reader.setReuseRecords(true);
+                for (WarcRecord record : reader) {
+                    actual.add(describe(record));
+                    records.add(record);
+                }
+            }
+            assertEquals(6, expected.size());
+            assertEquals(expected, actual);
+            assertSame(records.get(0), records.get(1));
+            assertSame(records.get(2), records.get(4));
+            assertNotSame(records.get(1), records.get(2));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String describe(WarcRecord record) throws IOException {
+        String description = record.position() + " " + record.type() + " " + record.id() + " " + record.headers();
+        if (record instanceof WarcResponse) {
+            HttpResponse http = ((WarcResponse) record).http();
+            description += " " + http.status() + " " + http.headers() + " " +
+                           new String(IOUtils.readNBytes(http.body().stream(), 8192), UTF_8);
+        } else if (record instanceof WarcRequest) {
+            HttpRequest http = ((WarcRequest) record).http();
+            description += " " + http.method() + " " + http.headers() + " " +
+                           new String(http.serializeHeader(), UTF_8);
+        } else {
+            description += " " + new String(IOUtils.readNBytes(record.body().stream(), 8192), UTF_8);
+        }
+        return description;
+    }
+
+    @Test
+    public void parallelStreamsShouldYieldEachRecordOnceInOrder() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try {
+            Random random = new Random(0);
+            List<String> expected = new ArrayList<>();
+            for (WarcCompression compression : new WarcCompression[]{WarcCompression.NONE, WarcCompression.GZIP}) {
+                Path temp = Files.createTempFile("jwarc", ".warc");
+                files.add(temp);
+                try (WarcWriter writer = new WarcWriter(FileChannel.open(temp, WRITE), compression)) {
+                    for (int i = 0; i < 300; i++) {
+                        byte[] payload = new byte[10000];
+                        random.nextBytes(payload);
+                        writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                                .body(MediaType.OCTET_STREAM, payload).build());
+                    }
+                }
+
+                List<String> sequential;
+                try (WarcReader reader = new WarcReader(temp)) {
+                    sequential = reader.records().map(r -> r.position() + " " + r.id()).collect(toList());
+                }
+                assertEquals(300, sequential.size());
+                expected.addAll(sequential);
+
+                try (WarcReader reader = new WarcReader(temp);
+                     Stream<WarcRecord> records = reader.records()) {
+                    assertNotNull(records.spliterator().trySplit());
+                }
+
+                // abandoning a split stream part way should leave the reader usable to the end of the file
+                try (WarcReader reader = new WarcReader(temp)) {
+                    List<String> actual = new ArrayList<>();
+                    try (Stream<WarcRecord> records = reader.records()) {
+                        Spliterator<WarcRecord> suffix = records.spliterator();
+                        Spliterator<WarcRecord> prefix = suffix.trySplit();
+                        assertNotNull(prefix);
+                        assertTrue(prefix.tryAdvance(r -> actual.add(r.position() + " " + r.id())));
+                    }
+                    for (WarcRecord record : reader) {
+                        actual.add(reader.position() + " " + record.id());
+                    }
+                    assertEquals(sequential, actual);
+                }
+
+                try (WarcReader reader = new WarcReader(temp);
+                     Stream<WarcRecord> records = reader.records()) {
+                    assertEquals(sequential, records.parallel().map(r -> r.position() + " " + r.id())
+                            .collect(toList()));
+                }
+            }
+
+            try (Stream<WarcRecord> records = WarcReader.records(files)) {
+                assertEquals(expected, records.parallel().map(r -> r.position() + " " + r.id())
+                        .collect(toList()));
+            }
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
 }
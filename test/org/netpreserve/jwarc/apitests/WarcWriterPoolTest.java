@@ -0,0 +1,98 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.apitests;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.netpreserve.jwarc.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class WarcWriterPoolTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldRollFilesAndKeepAllRecords() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        Set<Path> closedFiles = ConcurrentHashMap.newKeySet();
+        int threads = 4;
+        int recordsPerThread = 50;
+        try (WarcWriterPool pool = new WarcWriterPool(directory, 2)
+                .maxFileSize(20_000)
+                .filenameTemplate("test-{serial}.warc.gz")
+                .onFileClosed(closedFiles::add)) {
+            List<Thread> workers = new ArrayList<>();
+            List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                workers.add(new Thread(() -> {
+                    Random random = new Random(thread);
+                    try {
+                        for (int i = 0; i < recordsPerThread; i++) {
+                            byte[] payload = new byte[1000];
+                            random.nextBytes(payload);
+                            pool.write(new WarcResource.Builder(URI.create("http://example.org/" + thread + "/" + i))
+                                    .body(MediaType.OCTET_STREAM, payload).build());
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread worker : workers) worker.join();
+            assertEquals(Collections.emptyList(), errors);
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.sorted().collect(Collectors.toList());
+        }
+        assertTrue("expected several files but got " + files, files.size() > 2);
+        assertEquals(new HashSet<>(files), closedFiles);
+
+        Set<String> targets = new HashSet<>();
+        for (Path file : files) {
+            assertTrue(file.getFileName().toString().matches("test-\\d{5}\\.warc\\.gz"));
+            try (WarcReader reader = new WarcReader(file)) {
+                WarcRecord first = reader.next().orElseThrow(AssertionError::new);
+                assertTrue(first instanceof Warcinfo);
+                assertEquals(Optional.of(file.getFileName().toString()), ((Warcinfo) first).filename());
+                for (WarcRecord record : reader) {
+                    assertTrue(record instanceof WarcResource);
+                    assertTrue(targets.add(((WarcResource) record).target()));
+                }
+            }
+        }
+        assertEquals(threads * recordsPerThread, targets.size());
+    }
+
+    @Test
+    public void shouldRejectWritesAfterClose() throws IOException {
+        WarcWriterPool pool = new WarcWriterPool(temporaryFolder.getRoot().toPath(), 1);
+        pool.close();
+        try {
+            pool.write(new WarcResource.Builder(URI.create("http://example.org/")).build());
+            fail("expected an exception");
+        } catch (IOException e) {
+            // expected
+        }
+        try (Stream<Path> stream = Files.list(temporaryFolder.getRoot().toPath())) {
+            assertEquals(0, stream.count());
+        }
+    }
+}
@@ -17,19 +17,190 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class WarcWriterTest {
 
+    @Test
+    public void fetchShouldReuseConnectionsAndRecordChunkedResponses() throws Exception {
+        byte[] body = "Hello world!\n".getBytes(StandardCharsets.UTF_8);
+        List<Integer> clientPorts = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            boolean chunked = exchange.getRequestURI().getPath().equals("/chunked");
+            exchange.sendResponseHeaders(200, chunked ? 0 : body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (WarcWriter warcWriter = new WarcWriter(Channels.newChannel(out))) {
+                for (String path : new String[]{"/chunked", "/fixed", "/chunked"}) {
+                    URI uri = new URI("http", null, server.getAddress().getHostString(),
+                            server.getAddress().getPort(), path, null, null);
+                    warcWriter.fetch(uri, new FetchOptions().readTimeout(5000));
+                }
+            }
+            assertEquals(3, clientPorts.size());
+            assertEquals(1, clientPorts.stream().distinct().count());
+
+            MessageDigest payloadDigest = MessageDigest.getInstance("SHA-1");
+            payloadDigest.update(body);
+            String expectedDigest = new WarcDigest(payloadDigest).toString();
+            WarcReader warcReader = new WarcReader(new ByteArrayInputStream(out.toByteArray()));
+            int responses = 0;
+            for (WarcRecord record : warcReader) {
+                if (!(record instanceof WarcResponse)) continue;
+                WarcResponse response = (WarcResponse) record;
+                assertEquals(Optional.of(expectedDigest), response.payloadDigest().map(Object::toString));
+                assertEquals(new String(body, StandardCharsets.UTF_8),
+                        new String(IOUtils.readNBytes(response.http().body().stream(), body.length), StandardCharsets.UTF_8));
+                responses++;
+            }
+            assertEquals(3, responses);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void fetchAllShouldDeliverResultsWhileUriSourceBlocks() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            exchange.close();
+        });
+        server.start();
+        try {
+            URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            CountDownLatch firstResult = new CountDownLatch(1);
+            // a source that can't produce a second URI until the first result has been consumed
+            Iterable<URI> uris = () -> new Iterator<URI>() {
+                int count;
+
+                @Override
+                public boolean hasNext() {
+                    if (count == 1) {
+                        try {
+                            firstResult.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return count < 2;
+                }
+
+                @Override
+                public URI next() {
+                    count++;
+                    return uri;
+                }
+            };
+            try (WarcWriter warcWriter = new WarcWriter(Channels.newChannel(new ByteArrayOutputStream()))) {
+                Iterator<FetchResult> results = warcWriter.fetchAll(uris, new FetchOptions()).iterator();
+                assertTrue(results.hasNext());
+                results.next();
+                firstResult.countDown();
+                assertTrue(results.hasNext());
+                results.next();
+                assertFalse(results.hasNext());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void fetchAllShouldLimitConcurrencyPerHost() throws Exception {
+        Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+        Map<String, Integer> maxActive = new ConcurrentHashMap<>();
+        AtomicInteger totalActive = new AtomicInteger();
+        AtomicInteger maxTotalActive = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            int n = active.computeIfAbsent(host, k -> new AtomicInteger()).incrementAndGet();
+            maxActive.merge(host, n, Math::max);
+            maxTotalActive.accumulateAndGet(totalActive.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            totalActive.decrementAndGet();
+            active.get(host).decrementAndGet();
+            byte[] body = exchange.getRequestURI().getPath().getBytes(US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            int port = server.getAddress().getPort();
+            List<URI> uris = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                uris.add(URI.create("http://127.0.0.1:" + port + "/a" + i));
+                uris.add(URI.create("http://localhost:" + port + "/b" + i));
+            }
+            uris.add(URI.create("http://127.0.0.1:1/unreachable"));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            List<FetchResult> results;
+            try (WarcWriter warcWriter = new WarcWriter(Channels.newChannel(out))) {
+                results = warcWriter.fetchAll(uris, new FetchOptions().concurrency(8).perHostConcurrency(2))
+                        .collect(Collectors.toList());
+            }
+
+            assertEquals(uris.size(), results.size());
+            assertEquals(new HashSet<>(uris), results.stream().map(FetchResult::uri).collect(Collectors.toSet()));
+            List<FetchResult> failures = results.stream().filter(r -> r.exception() != null)
+                    .collect(Collectors.toList());
+            assertEquals(1, failures.size());
+            assertEquals(1, failures.get(0).uri().getPort());
+            for (int max : maxActive.values()) {
+                assertTrue("per-host limit exceeded: " + maxActive, max <= 2);
+            }
+            assertTrue("hosts weren't fetched concurrently", maxTotalActive.get() > 2);
+
+            int responses = 0;
+            for (WarcRecord record : new WarcReader(new ByteArrayInputStream(out.toByteArray()))) {
+                if (record instanceof WarcResponse) {
+                    assertEquals(200, ((WarcResponse) record).http().status());
+                    responses++;
+                }
+            }
+            assertEquals(20, responses);
+        } finally {
+            server.stop(0);
+        }
+    }
+
     @Test
     public void fetch() throws IOException, NoSuchAlgorithmException, URISyntaxException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -137,4 +308,185 @@ public class WarcWriterTest {
         assertEquals("test", resp.http().headers().map().get("Server").get(0));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void zstdWarcWithDictionary() throws IOException {
+        List<WarcRecord> samples = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            samples.add(new WarcResource.Builder(URI.create("http://example.org/sample/" + i))
+                    .body(MediaType.HTML, ("<html><body>Sample page " + i + "</body></html>").getBytes(US_ASCII))
+                    .build());
+        }
+        byte[] dictionary = WarcWriter.trainZstdDictionary(samples, 4096);
+        assertTrue(dictionary.length > 0);
+
+        for (byte[] dict : new byte[][]{null, dictionary}) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            List<Long> positions = new ArrayList<>();
+            List<URI> ids = new ArrayList<>();
+            try (WarcWriter writer = new WarcWriter(Channels.newChannel(baos), WarcCompression.ZSTD, dict)) {
+                for (int i = 0; i < 10; i++) {
+                    WarcResource record = new WarcResource.Builder(URI.create("http://example.org/" + i))
+                            .body(MediaType.HTML, ("<html><body>Page " + i + "</body></html>").getBytes(US_ASCII))
+                            .build();
+                    positions.add(writer.position());
+                    ids.add(record.id());
+                    writer.write(record);
+                }
+                assertEquals(baos.size(), writer.position());
+            }
+            byte[] warcBytes = baos.toByteArray();
+            ByteBuffer magic = ByteBuffer.wrap(warcBytes).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(dict == null ? 0xFD2FB528 : 0x184D2A5D, magic.getInt());
+
+            List<Long> readPositions = new ArrayList<>();
+            List<URI> readIds = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(new ByteArrayInputStream(warcBytes))) {
+                assertEquals(WarcCompression.ZSTD, reader.compression());
+                for (WarcRecord record : reader) {
+                    readPositions.add(reader.position());
+                    readIds.add(record.id());
+                    assertTrue(new String(IOUtils.readNBytes(record.body().stream(), 1024), US_ASCII)
+                            .startsWith("<html><body>Page "));
+                }
+            }
+            assertEquals(positions, readPositions);
+            assertEquals(ids, readIds);
+        }
+    }
+
+    @Test
+    public void writeAsyncShouldAppendInSubmissionOrder() throws Exception {
+        for (WarcCompression compression : new WarcCompression[]{WarcCompression.GZIP, WarcCompression.NONE}) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            List<URI> ids = new ArrayList<>();
+            List<CompletableFuture<WriteResult>> futures = new ArrayList<>();
+            Random random = new Random(0);
+            try (WarcWriter writer = new WarcWriter(Channels.newChannel(baos), compression)) {
+                writer.setCompressionThreads(4);
+                for (int i = 0; i < 50; i++) {
+                    // vary the size so later records often finish compressing first
+                    byte[] payload = new byte[random.nextInt(100000)];
+                    random.nextBytes(payload);
+                    WarcResource record = new WarcResource.Builder(URI.create("http://example.org/" + i))
+                            .body(MediaType.OCTET_STREAM, payload).build();
+                    ids.add(record.id());
+                    futures.add(writer.writeAsync(record));
+                }
+            }
+
+            List<URI> readIds = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(new ByteArrayInputStream(baos.toByteArray()))) {
+                assertEquals(compression, reader.compression());
+                for (WarcRecord record : reader) {
+                    WriteResult result = futures.get(readIds.size()).get();
+                    assertEquals(result.position(), reader.position());
+                    readIds.add(record.id());
+                }
+                WriteResult last = futures.get(futures.size() - 1).get();
+                assertEquals(baos.size(), last.position() + last.length());
+            }
+            assertEquals(ids, readIds);
+        }
+    }
+
+    @Test
+    public void adaptiveCompressionPolicy() throws Exception {
+        Random random = new Random(0);
+        byte[] noise = new byte[20000];
+        random.nextBytes(noise);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 20000) {
+            text.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n");
+        }
+        byte[] html = text.toString().getBytes(US_ASCII);
+
+        List<WarcRecord> records = new ArrayList<>();
+        records.add(new WarcResource.Builder(URI.create("http://example.org/page.html"))
+                .body(MediaType.HTML, html).build());
+        records.add(new WarcResource.Builder(URI.create("http://example.org/photo.jpg"))
+                .body(MediaType.parse("image/jpeg"), html).build());
+        records.add(new WarcResource.Builder(URI.create("http://example.org/noise"))
+                .body(MediaType.OCTET_STREAM, noise).build());
+        records.add(new WarcResponse.Builder(URI.create("http://example.org/image.png"))
+                .body(new HttpResponse.Builder(200, "OK").body(MediaType.parse("image/png"), html).build())
+                .build());
+        records.add(new WarcResponse.Builder(URI.create("http://example.org/gzipped"))
+                .body(new HttpResponse.Builder(200, "OK").addHeader("Content-Encoding", "gzip")
+                        .body(MediaType.HTML, html).build())
+                .build());
+        WarcResponse parsedResponse = new WarcResponse.Builder(URI.create("http://example.org/parsed.html"))
+                .body(new HttpResponse.Builder(200, "OK").body(MediaType.HTML, html).build())
+                .build();
+        parsedResponse.http(); // as fetch() does, leaving the header pushed back
+        records.add(parsedResponse);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        List<Integer> levels = new ArrayList<>();
+        try (WarcWriter writer = new WarcWriter(Channels.newChannel(baos), WarcCompression.GZIP)) {
+            writer.setCompressionPolicy(CompressionPolicy.adaptive());
+            writer.onCompression((record, level, uncompressedLength, compressedLength) -> levels.add(level));
+            for (WarcRecord record : records) {
+                writer.write(record);
+            }
+        }
+        assertEquals(Arrays.asList(9, 1, 0, 1, 1, 9), levels);
+
+        List<Long> bodySizes = new ArrayList<>();
+        try (WarcReader reader = new WarcReader(new ByteArrayInputStream(baos.toByteArray()))) {
+            for (WarcRecord record : reader) {
+                bodySizes.add((long) IOUtils.readNBytes(record.body().stream(), 100000).length);
+            }
+        }
+        List<Long> expectedSizes = new ArrayList<>();
+        for (WarcRecord record : records) {
+            expectedSizes.add(record.body().size());
+        }
+        assertEquals(expectedSizes, bodySizes);
+    }
+
+    @Test
+    public void shouldWriteSmallAndFileBackedRecordsToFileChannel() throws IOException {
+        Path bodyFile = Files.createTempFile("jwarc", ".tmp");
+        Path warcFile = Files.createTempFile("jwarc", ".warc");
+        try {
+            Random random = new Random(0);
+            byte[] large = new byte[300000];
+            random.nextBytes(large);
+            Files.write(bodyFile, large);
+
+            List<byte[]> bodies = new ArrayList<>();
+            try (WarcWriter writer = new WarcWriter(FileChannel.open(warcFile, WRITE));
+                 FileChannel bodyChannel = FileChannel.open(bodyFile)) {
+                for (int i = 0; i < 5; i++) {
+                    byte[] small = ("small record " + i).getBytes(US_ASCII);
+                    bodies.add(small);
+                    writer.write(new WarcResource.Builder(URI.create("http://example.org/" + i))
+                            .body(MediaType.PLAIN_TEXT, small).build());
+                }
+                bodies.add(large);
+                writer.write(new WarcResource.Builder(URI.create("http://example.org/large"))
+                        .body(MediaType.OCTET_STREAM, bodyChannel, large.length).build());
+                bodies.add(large);
+                bodyChannel.position(0);
+                WarcResponse response = new WarcResponse.Builder(URI.create("http://example.org/response"))
+                        .body(MediaType.HTTP_RESPONSE, bodyChannel, large.length).build();
+                writer.write(response);
+                assertEquals(Files.size(warcFile), writer.position());
+            }
+
+            List<byte[]> readBodies = new ArrayList<>();
+            try (WarcReader reader = new WarcReader(warcFile)) {
+                for (WarcRecord record : reader) {
+                    readBodies.add(IOUtils.readNBytes(record.body().stream(), 1000000));
+                }
+            }
+            assertEquals(bodies.size(), readBodies.size());
+            for (int i = 0; i < bodies.size(); i++) {
+                assertArrayEquals(bodies.get(i), readBodies.get(i));
+            }
+        } finally {
+            Files.deleteIfExists(bodyFile);
+            Files.deleteIfExists(warcFile);
+        }
+    }
+}
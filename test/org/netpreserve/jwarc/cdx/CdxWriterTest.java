@@ -11,16 +11,19 @@ import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.WRITE;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class CdxWriterTest {
     @Rule
@@ -274,4 +277,73 @@ public class CdxWriterTest {
         assertThat(splits.get(0), containsString("http://example.org/resource.png"));
         assertThat(splits.get(0), containsString("\"mime\": \"image/png\""));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void parallelProcessingShouldMatchSingleThreaded() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int f = 0; f < 3; f++) {
+            Path file = temporaryFolder.newFile("test" + f + ".warc.gz").toPath();
+            try (WarcWriter warcWriter = new WarcWriter(Files.newByteChannel(file, CREATE, WRITE),
+                    WarcCompression.GZIP)) {
+                for (int i = 0; i < 200; i++) {
+                    HttpResponse httpResponse = new HttpResponse.Builder(200, "OK")
+                            .body(MediaType.HTML, ("page " + f + " " + i).getBytes(UTF_8))
+                            .build();
+                    warcWriter.write(new WarcResponse.Builder("http://example.org/" + ((i * 37 + f) % 101))
+                            .date(Instant.parse("2022-03-01T12:44:34Z").plusSeconds(i))
+                            .body(httpResponse)
+                            .build());
+                }
+            }
+            files.add(file);
+        }
+
+        for (boolean sort : new boolean[]{false, true}) {
+            StringWriter expected = new StringWriter();
+            try (CdxWriter cdxWriter = new CdxWriter(expected)) {
+                cdxWriter.setSort(sort);
+                cdxWriter.process(files, false);
+            }
+            StringWriter actual = new StringWriter();
+            try (CdxWriter cdxWriter = new CdxWriter(actual)) {
+                cdxWriter.splitSize = 4096; // force large file splitting
+                cdxWriter.setSort(sort);
+                cdxWriter.process(files, false, 4);
+            }
+            assertEquals(600, expected.toString().split("\n").length);
+            assertEquals(expected.toString(), actual.toString());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void parallelProcessingShouldFailOnCorruptFile() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int f = 0; f < 9; f++) {
+            Path file = temporaryFolder.newFile("test" + f + ".warc.gz").toPath();
+            try (WarcWriter warcWriter = new WarcWriter(Files.newByteChannel(file, CREATE, WRITE),
+                    WarcCompression.GZIP)) {
+                for (int i = 0; i < 20; i++) {
+                    HttpResponse httpResponse = new HttpResponse.Builder(200, "OK")
+                            .body(MediaType.HTML, ("page " + f + " " + i).getBytes(UTF_8))
+                            .build();
+                    warcWriter.write(new WarcResponse.Builder("http://example.org/" + i)
+                            .date(Instant.parse("2022-03-01T12:44:34Z"))
+                            .body(httpResponse)
+                            .build());
+                }
+            }
+            files.add(file);
+        }
+        // truncate the first file in the middle of a gzip member
+        Path first = files.get(0);
+        byte[] data = Files.readAllBytes(first);
+        Files.write(first, Arrays.copyOf(data, data.length / 2 + 7));
+
+        try (CdxWriter cdxWriter = new CdxWriter(new StringWriter())) {
+            cdxWriter.process(files, false, 2);
+            fail("expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
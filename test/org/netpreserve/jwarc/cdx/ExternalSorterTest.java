@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class ExternalSorterTest {
+    @Test
+    public void shouldMergeSpilledRuns() throws IOException {
+        Random random = new Random(0);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("org,example)/" + random.nextInt(500) + " 2024" + (i % 10) + "\r" + (i % 2 == 0 ? "￿" : "😀"));
+        }
+        StringWriter output = new StringWriter();
+        // a tiny run size forces a spill per line and so also a multi-pass merge
+        try (ExternalSorter sorter = new ExternalSorter(1, 3)) {
+            for (String line : lines) {
+                sorter.add(line);
+            }
+            sorter.writeTo(output);
+        }
+        lines.sort(ExternalSorter.BYTE_ORDER);
+        assertEquals(String.join("\n", lines) + "\n", output.toString());
+    }
+
+    @Test
+    public void shouldCompareLikeUtf8Bytes() {
+        List<String> strings = Arrays.asList("a", "ab", "b", "é", "￿", "😀", "", "");
+        for (String a : strings) {
+            for (String b : strings) {
+                assertEquals(a + " vs " + b, Integer.signum(compareBytes(a.getBytes(UTF_8), b.getBytes(UTF_8))),
+                        Integer.signum(ExternalSorter.compareUtf8(a, b)));
+            }
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) return cmp;
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class SortedCdxFileTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String host = "com,example" + (i % 7) + ")/";
+            String path = i % 3 == 0 ? "" : "page" + (i % 50);
+            String date = String.format("2020%02d01000000", 1 + i % 12);
+            lines.add(host + path + " " + date + " http://example" + (i % 7) + ".com/" + path +
+                    " text/html 200 AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA - - 100 " + i + " test.warc.gz");
+        }
+        lines.sort(ExternalSorter.BYTE_ORDER);
+        Path file = temporaryFolder.newFile("test.cdx").toPath();
+        Files.write(file, (" CDX N b a m s k r M S V g\n" + String.join("\n", lines) + "\n").getBytes(UTF_8));
+
+        try (SortedCdxFile cdx = new SortedCdxFile(file)) {
+            assertEquals(filter(lines, l -> l.startsWith("com,example3)/page7 ")),
+                    toStrings(cdx.exact("com,example3)/page7").collect(Collectors.toList())));
+            assertEquals(filter(lines, l -> l.startsWith("com,example0)/ ")),
+                    toStrings(cdx.exact("com,example0)/").collect(Collectors.toList())));
+            assertEquals(filter(lines, l -> l.startsWith("com,example5)/")),
+                    toStrings(cdx.prefix("com,example5)/").collect(Collectors.toList())));
+            assertEquals(filter(lines, l -> l.startsWith("com,example1)/page1 ")
+                            && l.compareTo("com,example1)/page1 20200301") >= 0
+                            && l.compareTo("com,example1)/page1 20200601000000 ~") <= 0),
+                    toStrings(cdx.exact("com,example1)/page1", Instant.parse("2020-03-01T00:00:00Z"),
+                            Instant.parse("2020-06-01T00:00:00Z")).collect(Collectors.toList())));
+
+            List<CdxRecord> records = cdx.exact("com,example3)/page7").collect(Collectors.toList());
+            assertFalse(records.isEmpty());
+            assertEquals("http://example3.com/page7", records.get(0).target());
+            assertEquals(Long.valueOf(100), records.get(0).size());
+
+            assertEquals(0, cdx.exact("com,example3)/page").count());
+            assertEquals(0, cdx.prefix("zzz").count());
+            assertEquals(0, cdx.prefix("a").count());
+        }
+    }
+
+    private static List<String> filter(List<String> lines, Predicate<String> predicate) {
+        List<String> result = lines.stream().filter(predicate).collect(Collectors.toList());
+        assertFalse(result.isEmpty());
+        return result;
+    }
+
+    private static List<String> toStrings(List<CdxRecord> records) {
+        return records.stream().map(CdxRecord::toString).collect(Collectors.toList());
+    }
+}
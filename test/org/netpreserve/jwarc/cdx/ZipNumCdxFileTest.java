@@ -0,0 +1,85 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright (C) 2026 National Library of Australia and the jwarc contributors
+ */
+
+package org.netpreserve.jwarc.cdx;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class ZipNumCdxFileTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void lookupsShouldMatchUncompressedIndex() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String host = "com,example" + (i % 7) + ")/";
+            String path = i % 3 == 0 ? "" : "page" + (i % 50);
+            String date = String.format("2020%02d01000000", 1 + i % 12);
+            lines.add(host + path + " " + date + " http://example" + (i % 7) + ".com/" + path +
+                    " text/html 200 AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA - - 100 " + i + " test.warc.gz");
+        }
+        lines.sort(ExternalSorter.BYTE_ORDER);
+        String text = " CDX N b a m s k r M S V g\n" + String.join("\n", lines) + "\n";
+        Path cdxFile = temporaryFolder.newFile("test.cdx").toPath();
+        Files.write(cdxFile, text.getBytes(UTF_8));
+
+        Path dataFile = temporaryFolder.getRoot().toPath().resolve("test.cdx.gz");
+        Path summaryFile = temporaryFolder.getRoot().toPath().resolve("test.idx");
+        try (ZipNumWriter writer = new ZipNumWriter(dataFile, summaryFile)) {
+            writer.setLinesPerBlock(50);
+            // write in uneven pieces to check lines are split correctly
+            for (int i = 0; i < text.length(); i += 777) {
+                writer.write(text, i, Math.min(777, text.length() - i));
+            }
+        }
+
+        List<String> summary = Files.readAllLines(summaryFile, UTF_8);
+        assertEquals(61, summary.size());
+        assertTrue(summary.get(1).matches("com,example0\\)/\\S* \\d{14}\ttest\t\\d+\t\\d+\t2"));
+        assertTrue(Files.size(dataFile) < Files.size(cdxFile) / 3);
+
+        try (SortedCdxFile expected = new SortedCdxFile(cdxFile);
+             ZipNumCdxFile zipnum = new ZipNumCdxFile(summaryFile)) {
+            zipnum.setCacheSize(2);
+            Instant from = Instant.parse("2020-03-01T00:00:00Z");
+            Instant to = Instant.parse("2020-06-01T00:00:00Z");
+            for (String key : new String[]{"com,example0)/", "com,example3)/page7", "com,example6)/page49",
+                    "com,example3)/page", "a", "zzz"}) {
+                assertEquals(key, toStrings(expected.exact(key)), toStrings(zipnum.exact(key)));
+                assertEquals(key, toStrings(expected.exact(key, from, to)), toStrings(zipnum.exact(key, from, to)));
+                assertEquals(key, toStrings(expected.prefix(key)), toStrings(zipnum.prefix(key)));
+            }
+            assertEquals(lines.size(), zipnum.prefix("").count());
+            assertEquals(Long.valueOf(100), zipnum.exact("com,example3)/page7").findFirst().get().size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void writerShouldRejectUnsortedInput() throws IOException {
+        Path dir = temporaryFolder.getRoot().toPath();
+        try (ZipNumWriter writer = new ZipNumWriter(dir.resolve("bad.cdx.gz"), dir.resolve("bad.idx"))) {
+            writer.write("org,example)/b 20200101000000\norg,example)/a 20200101000000\n");
+        }
+    }
+
+    private static List<String> toStrings(Stream<CdxRecord> records) {
+        return records.map(CdxRecord::toString).collect(Collectors.toList());
+    }
+}